@@ -0,0 +1,245 @@
+// by Luminaw
+// The group-by columns and aggregate functions that CSVParser.aggregate computes.
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A group-by query for {@link CSVParser#aggregate(String, Aggregation)}: the key columns
+ * that define the groups and the values computed for each group. Columns are given by
+ * zero-based position or by header name, like a {@link ColumnProjection}.
+ * <p>
+ * {@link #count()} counts the rows of a group. The other functions read a column as
+ * decimal numbers; fields that are empty, missing or not numbers are skipped, so
+ * {@link #avg(int)} is the mean of the numeric values only. A group with no numeric
+ * value in the column gets a null sum, minimum, maximum and average.
+ */
+public final class Aggregation {
+    /**
+     * A value computed for each group.
+     */
+    enum Function {
+        COUNT, SUM, MIN, MAX, AVG;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final int[] keyIndices;
+    private final String[] keyNames;
+    private final Function[] functions;
+    private final int[] indices;
+    private final String[] names;
+
+    private Aggregation(int[] keyIndices, String[] keyNames, Function[] functions, int[] indices, String[] names) {
+        this.keyIndices = keyIndices;
+        this.keyNames = keyNames;
+        this.functions = functions;
+        this.indices = indices;
+        this.names = names;
+    }
+
+    /**
+     * Creates a query with every row in one group, for totals over the whole file. The
+     * result always has exactly one row: for a file with only a header row, the count
+     * is 0 and the sum, minimum, maximum and average are null.
+     * @return The query, with no aggregates yet
+     */
+    public static Aggregation all() {
+        return new Aggregation(new int[0], null, new Function[0], new int[0], new String[0]);
+    }
+
+    /**
+     * Creates a query that groups rows by column positions.
+     * @param columns The key columns, in output order
+     * @return The query, with no aggregates yet
+     * @throws IllegalArgumentException If no columns are given, or an index is negative or repeated
+     */
+    public static Aggregation groupBy(int... columns) {
+        int[] keys = ColumnProjection.indices(columns).positions(); // Validates the columns
+        return new Aggregation(keys, null, new Function[0], new int[0], new String[0]);
+    }
+
+    /**
+     * Creates a query that groups rows by named columns.
+     * @param names The key column names as they appear in the first row, in output order
+     * @return The query, with no aggregates yet
+     * @throws IllegalArgumentException If no names are given, or a name is null or repeated
+     */
+    public static Aggregation groupBy(String... names) {
+        ColumnProjection.names(names); // Validates the names
+        return new Aggregation(null, names.clone(), new Function[0], new int[0], new String[0]);
+    }
+
+    /**
+     * Returns a query that also counts the rows of each group, in a LONG column named "count".
+     * @return A new query; this one is unchanged
+     */
+    public Aggregation count() {
+        return add(Function.COUNT, -1, null);
+    }
+
+    /**
+     * Returns a query that also sums a column. The result is a LONG column if every value
+     * is an integer and the sums fit in a long, and a DOUBLE column otherwise.
+     * @param column Zero-based column index
+     * @return A new query; this one is unchanged
+     */
+    public Aggregation sum(int column) {
+        return add(Function.SUM, checkColumn(column), null);
+    }
+
+    /**
+     * Returns a query that also sums a named column.
+     * @param name The column name as it appears in the first row
+     * @return A new query; this one is unchanged
+     * @see #sum(int)
+     */
+    public Aggregation sum(String name) {
+        return add(Function.SUM, -1, checkName(name));
+    }
+
+    /**
+     * Returns a query that also finds the smallest value of a column. The result is a
+     * LONG column if every value is an integer, and a DOUBLE column otherwise.
+     * @param column Zero-based column index
+     * @return A new query; this one is unchanged
+     */
+    public Aggregation min(int column) {
+        return add(Function.MIN, checkColumn(column), null);
+    }
+
+    /**
+     * Returns a query that also finds the smallest value of a named column.
+     * @param name The column name as it appears in the first row
+     * @return A new query; this one is unchanged
+     * @see #min(int)
+     */
+    public Aggregation min(String name) {
+        return add(Function.MIN, -1, checkName(name));
+    }
+
+    /**
+     * Returns a query that also finds the largest value of a column. The result is a
+     * LONG column if every value is an integer, and a DOUBLE column otherwise.
+     * @param column Zero-based column index
+     * @return A new query; this one is unchanged
+     */
+    public Aggregation max(int column) {
+        return add(Function.MAX, checkColumn(column), null);
+    }
+
+    /**
+     * Returns a query that also finds the largest value of a named column.
+     * @param name The column name as it appears in the first row
+     * @return A new query; this one is unchanged
+     * @see #max(int)
+     */
+    public Aggregation max(String name) {
+        return add(Function.MAX, -1, checkName(name));
+    }
+
+    /**
+     * Returns a query that also averages a column, in a DOUBLE column.
+     * @param column Zero-based column index
+     * @return A new query; this one is unchanged
+     */
+    public Aggregation avg(int column) {
+        return add(Function.AVG, checkColumn(column), null);
+    }
+
+    /**
+     * Returns a query that also averages a named column.
+     * @param name The column name as it appears in the first row
+     * @return A new query; this one is unchanged
+     * @see #avg(int)
+     */
+    public Aggregation avg(String name) {
+        return add(Function.AVG, -1, checkName(name));
+    }
+
+    /**
+     * Returns the number of aggregates.
+     */
+    int size() {
+        return functions.length;
+    }
+
+    Function function(int aggregate) {
+        return functions[aggregate];
+    }
+
+    /**
+     * Resolves the key columns to positions.
+     * @param header The first row of the file, used to find named columns
+     * @return The key column positions, in output order
+     * @throws CSVParser.CSVParserException If a named column is not in the header
+     */
+    int[] resolveKeys(String[] header) throws CSVParser.CSVParserException {
+        return keyNames != null ? ColumnProjection.names(keyNames).resolve(header) : keyIndices;
+    }
+
+    /**
+     * Resolves the aggregated columns to positions.
+     * @param header The first row of the file, used to find named columns
+     * @return The column of each aggregate, or -1 for a count
+     * @throws CSVParser.CSVParserException If a named column is not in the header
+     */
+    int[] resolveValues(String[] header) throws CSVParser.CSVParserException {
+        int[] columns = indices.clone();
+        for (int a = 0; a < columns.length; a++) {
+            if (names[a] != null) {
+                columns[a] = Arrays.asList(header).indexOf(names[a]);
+                if (columns[a] < 0) {
+                    throw new CSVParser.CSVParserException("Column not found in header: " + names[a]);
+                }
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Returns the output column name of an aggregate, such as "sum(amount)", or "sum(3)"
+     * when the column was given by position and the file has no header.
+     * @param aggregate The aggregate
+     * @param header The header row, or null
+     * @param column The resolved column of the aggregate
+     */
+    String label(int aggregate, String[] header, int column) {
+        Function function = functions[aggregate];
+        if (function == Function.COUNT) {
+            return function.label();
+        }
+        String name = names[aggregate];
+        if (name == null) {
+            name = header != null && column < header.length ? header[column] : Integer.toString(column);
+        }
+        return function.label() + "(" + name + ")";
+    }
+
+    private Aggregation add(Function function, int column, String name) {
+        int n = functions.length;
+        Function[] f = Arrays.copyOf(functions, n + 1);
+        int[] i = Arrays.copyOf(indices, n + 1);
+        String[] s = Arrays.copyOf(names, n + 1);
+        f[n] = function;
+        i[n] = column;
+        s[n] = name;
+        return new Aggregation(keyIndices, keyNames, f, i, s);
+    }
+
+    private static int checkColumn(int column) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Column index cannot be negative: " + column);
+        }
+        return column;
+    }
+
+    private static String checkName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Column name cannot be null");
+        }
+        return name;
+    }
+}
@@ -0,0 +1,65 @@
+// by Luminaw
+// Several conditions on one field, kept apart so each can still be tested on the parser's buffer.
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of {@link FieldPredicate#and(FieldPredicate)}. The parts are kept as separate
+ * predicates instead of being wrapped in a lambda, so {@link CSVRow} can test each one on
+ * the field's characters in place; numeric ranges are intersected into a single
+ * {@link NumericPredicate}, so the field is decoded only once.
+ */
+final class AndPredicate implements FieldPredicate {
+    private final FieldPredicate[] parts;
+
+    private AndPredicate(FieldPredicate[] parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Combines two predicates.
+     * @param first The first predicate
+     * @param second The second predicate
+     * @return A predicate that holds when both hold; a NumericPredicate if both are ranges
+     */
+    static FieldPredicate of(FieldPredicate first, FieldPredicate second) {
+        if (second == null) {
+            throw new IllegalArgumentException("Predicate cannot be null");
+        }
+        List<FieldPredicate> parts = new ArrayList<>();
+        NumericPredicate range = null;
+        for (FieldPredicate predicate : new FieldPredicate[] {first, second}) {
+            FieldPredicate[] flat = predicate instanceof AndPredicate
+                    ? ((AndPredicate) predicate).parts : new FieldPredicate[] {predicate};
+            for (FieldPredicate part : flat) {
+                if (part instanceof NumericPredicate) {
+                    range = range == null ? (NumericPredicate) part : range.intersect((NumericPredicate) part);
+                } else {
+                    parts.add(part);
+                }
+            }
+        }
+        if (range != null) {
+            parts.add(0, range); // Cheapest test first
+        }
+        return parts.size() == 1 ? parts.get(0) : new AndPredicate(parts.toArray(new FieldPredicate[0]));
+    }
+
+    /**
+     * Returns the combined predicates.
+     */
+    FieldPredicate[] parts() {
+        return parts;
+    }
+
+    @Override
+    public boolean test(CharSequence value) {
+        for (FieldPredicate part : parts) {
+            if (!part.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,138 @@
+// by Luminaw
+// Base class for record sources that read raw UTF-8 bytes.
+// Finds record boundaries on the bytes and tokenizes each record with Utf8Tokenizer.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A record source over a sequence of byte buffers. Subclasses supply the buffers
+ * (mapped regions, or blocks read from a stream); this class splits them into records
+ * and fields. Records end at "\n", "\r" or "\r\n" outside quotes, the same as
+ * {@link CharRecordSource}. Inside quotes, the quote state of a record is the parity of
+ * the quote bytes seen so far, because an escaped quote toggles the state twice.
+ */
+abstract class ByteRecordSource implements CSVParser.RecordSource {
+    private final Utf8Tokenizer tokenizer;
+    private final byte quote;
+    private final StructuralScanner scanner;
+    private byte[] line = new byte[256];
+    private boolean skipLF;
+    private long recordStart;
+
+    /** The current block of input, positioned at the next unread byte; must be little-endian. */
+    protected ByteBuffer buffer;
+    /** Offset in the input of the first byte of {@link #buffer}. */
+    protected long bufferStart;
+
+    ByteRecordSource(CSVParser parser) {
+        this.tokenizer = new Utf8Tokenizer(parser);
+        this.quote = (byte) parser.getQuoteChar();
+        this.scanner = StructuralScanner.create(quote, (byte) '\n', (byte) '\r');
+    }
+
+    /**
+     * Replaces {@link #buffer} with the next block of input.
+     * @return False if there is no more input
+     * @throws IOException If the input cannot be read
+     */
+    protected abstract boolean nextBuffer() throws IOException;
+
+    @Override
+    public boolean next(CSVRow row) throws IOException {
+        int length;
+        while ((length = readLine()) >= 0) {
+            if (isBlank(length)) continue; // Skip empty records
+            tokenizer.tokenize(line, length, row);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns where the record last returned by {@link #next(CSVRow)} starts.
+     * @return The offset of its first byte in the input
+     */
+    long recordStart() {
+        return recordStart;
+    }
+
+    /**
+     * Forgets the state of the record being read, after a subclass has moved to a new
+     * position in the input.
+     */
+    protected void restart() {
+        skipLF = false;
+    }
+
+    /**
+     * Copies the next record into the line buffer.
+     * @return The length of the line in bytes, or -1 at the end of the input
+     */
+    private int readLine() throws IOException {
+        int length = 0;
+        boolean sawAny = false;
+        boolean inQuotes = false;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                if (!nextBuffer()) {
+                    return sawAny ? length : -1;
+                }
+                scanner.reset();
+            }
+            if (skipLF) {
+                skipLF = false;
+                if (buffer.get(buffer.position()) == '\n') {
+                    buffer.position(buffer.position() + 1);
+                    continue;
+                }
+            }
+            int start = buffer.position();
+            int limit = buffer.limit();
+            if (!sawAny) {
+                recordStart = bufferStart + start;
+            }
+            int i = start;
+            while ((i = scanner.next(buffer, i, limit)) < limit) {
+                if (buffer.get(i) != quote) {
+                    if (!inQuotes) break; // Line break outside quotes ends the record
+                } else {
+                    inQuotes = !inQuotes;
+                }
+                i++;
+            }
+            sawAny = true;
+            length = append(start, i - start, length);
+            if (i < limit) {
+                skipLF = buffer.get(i) == '\r';
+                buffer.position(i + 1);
+                return length;
+            }
+            buffer.position(limit);
+        }
+    }
+
+    private int append(int start, int count, int length) {
+        if (length + count > line.length) {
+            byte[] grown = new byte[Math.max(line.length * 2, length + count)];
+            System.arraycopy(line, 0, grown, 0, length);
+            line = grown;
+        }
+        buffer.position(start);
+        buffer.get(line, length, count);
+        return length + count;
+    }
+
+    /**
+     * Checks for a record that would be empty after trim(). Bytes up to 0x20 are always
+     * single-byte ASCII characters in UTF-8, so this can be decided before decoding.
+     */
+    private boolean isBlank(int length) {
+        for (int i = 0; i < length; i++) {
+            if ((line[i] & 0xFF) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
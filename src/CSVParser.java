@@ -3,10 +3,18 @@
 // Provides functionality for handling headers, type conversion, and enhanced validation.
 
 import java.io.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
  * A utility class for parsing and writing CSV files.
@@ -15,6 +23,15 @@ import java.util.HashMap;
 public class CSVParser {
     private final String delimiter;
     private final char quoteChar;
+    private final DelimiterMatcher delimiterMatcher;
+    private HeaderDetector headerDetector = HeaderDetector.names();
+    private ColumnProjection projection;
+    private RowFilter filter;
+    private DictionaryEncoding dictionaryEncoding = DictionaryEncoding.auto();
+    private StringCache stringCache;
+    private ColumnTable.Storage columnStorage = ColumnTable.Storage.HEAP;
+    private long sortMemory = 64L << 20;
+    private final boolean validatesArrays = overridesArrayValidation(getClass());
 
     /**
      * Constructs a CSVParser with default delimiter (",") and quote character ("").
@@ -25,12 +42,177 @@ public class CSVParser {
 
     /**
      * Constructs a CSVParser with specified delimiter and quote character.
+     * The delimiter may be longer than one character, for example "||" or "~|~".
      * @param delimiter The delimiter to use
      * @param quoteChar The quote character to use
+     * @throws IllegalArgumentException If the delimiter is empty or contains the quote character or a line break
      */
     public CSVParser(String delimiter, char quoteChar) {
+        if (delimiter == null || delimiter.isEmpty()) {
+            throw new IllegalArgumentException("Delimiter cannot be null or empty");
+        }
+        if (delimiter.indexOf(quoteChar) >= 0 || delimiter.indexOf('\n') >= 0 || delimiter.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("Delimiter cannot contain the quote character or a line break");
+        }
         this.delimiter = delimiter;
         this.quoteChar = quoteChar;
+        this.delimiterMatcher = new DelimiterMatcher(delimiter);
+    }
+
+    /**
+     * Returns the delimiter used to separate fields.
+     * @return The delimiter
+     */
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    DelimiterMatcher getDelimiterMatcher() {
+        return delimiterMatcher;
+    }
+
+    /**
+     * Returns the character used to quote fields.
+     * @return The quote character
+     */
+    public char getQuoteChar() {
+        return quoteChar;
+    }
+
+    /**
+     * Returns the strategy used to recognize a header in the first row.
+     * @return The header detector
+     */
+    public HeaderDetector getHeaderDetector() {
+        return headerDetector;
+    }
+
+    /**
+     * Sets the strategy used to recognize a header in the first row.
+     * The default is {@link HeaderDetector#names()}.
+     * @param headerDetector The header detector to use
+     */
+    public void setHeaderDetector(HeaderDetector headerDetector) {
+        if (headerDetector == null) {
+            throw new IllegalArgumentException("Header detector cannot be null");
+        }
+        this.headerDetector = headerDetector;
+    }
+
+    /**
+     * Returns the columns that parsed rows are restricted to.
+     * @return The projection, or null if all columns are read
+     */
+    public ColumnProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * Restricts parsed rows to a set of columns. Unselected columns are skipped while
+     * tokenizing instead of being built and discarded. Applies to readers opened and
+     * files parsed after the call.
+     * @param projection The columns to read, or null to read all columns
+     */
+    public void setProjection(ColumnProjection projection) {
+        this.projection = projection;
+    }
+
+    /**
+     * Returns the conditions that rows must meet to be returned.
+     * @return The filter, or null if every row is returned
+     */
+    public RowFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Restricts parsed rows to those that meet a set of column conditions. The conditions
+     * are checked while tokenizing, so rejected rows are never built or validated.
+     * Applies to readers opened and files parsed after the call.
+     * @param filter The conditions, or null to return every row
+     */
+    public void setFilter(RowFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Returns the policy for dictionary-encoding text columns in {@link #parseColumns(String)}.
+     * @return The dictionary encoding policy
+     */
+    public DictionaryEncoding getDictionaryEncoding() {
+        return dictionaryEncoding;
+    }
+
+    /**
+     * Sets the policy for dictionary-encoding text columns in {@link #parseColumns(String)}.
+     * The default is {@link DictionaryEncoding#auto()}.
+     * @param dictionaryEncoding The policy to use
+     */
+    public void setDictionaryEncoding(DictionaryEncoding dictionaryEncoding) {
+        if (dictionaryEncoding == null) {
+            throw new IllegalArgumentException("Dictionary encoding cannot be null");
+        }
+        this.dictionaryEncoding = dictionaryEncoding;
+    }
+
+    /**
+     * Returns where {@link #parseColumns(String)} keeps column values.
+     * @return The column storage
+     */
+    public ColumnTable.Storage getColumnStorage() {
+        return columnStorage;
+    }
+
+    /**
+     * Sets where {@link #parseColumns(String)} keeps column values. With
+     * {@link ColumnTable.Storage#OFF_HEAP} the values are kept in direct memory, which
+     * must be released by closing the table. The default is {@link ColumnTable.Storage#HEAP}.
+     * @param columnStorage The column storage to use
+     */
+    public void setColumnStorage(ColumnTable.Storage columnStorage) {
+        if (columnStorage == null) {
+            throw new IllegalArgumentException("Column storage cannot be null");
+        }
+        this.columnStorage = columnStorage;
+    }
+
+    /**
+     * Returns the cache that parsed field values are deduplicated through.
+     * @return The cache, or null if every field gets a new String
+     */
+    public StringCache getStringCache() {
+        return stringCache;
+    }
+
+    /**
+     * Sets a cache so that repeated field values share one String instance. Its hit rate
+     * shows whether the size suits the data. Applies to readers opened and files parsed
+     * after the call; the cache must not be used by two readers at the same time.
+     * @param stringCache The cache, or null to create a new String for every field
+     */
+    public void setStringCache(StringCache stringCache) {
+        this.stringCache = stringCache;
+    }
+
+    /**
+     * Returns the memory budget of {@link #sort(String, String, SortOrder)}.
+     * @return The estimated bytes of rows held in memory before a run is written to disk
+     */
+    public long getSortMemory() {
+        return sortMemory;
+    }
+
+    /**
+     * Sets the memory budget of {@link #sort(String, String, SortOrder)}. Rows are held
+     * until their estimated heap size reaches the budget, then sorted and written to a
+     * temporary run file. The default is 64 MB.
+     * @param sortMemory The budget in bytes
+     */
+    public void setSortMemory(long sortMemory) {
+        if (sortMemory <= 0) {
+            throw new IllegalArgumentException("Sort memory must be positive: " + sortMemory);
+        }
+        this.sortMemory = sortMemory;
     }
 
     /**
@@ -40,33 +222,497 @@ public class CSVParser {
      * @throws CSVParserException If an error occurs during parsing
      */
     public List<String[]> parse(String filePath) throws CSVParserException {
+        return readAll(openReader(filePath));
+    }
+
+    /**
+     * Parses a CSV file through a memory-mapped view of the file instead of a buffered stream.
+     * Produces the same records as {@link #parse(String)}, but lines and fields are split on the
+     * mapped bytes and only field contents are copied onto the heap.
+     * @param filePath Path to the CSV file
+     * @return List of string arrays representing the CSV data
+     * @throws CSVParserException If an error occurs during parsing
+     */
+    public List<String[]> parseMapped(String filePath) throws CSVParserException {
+        return readAll(openMappedReader(filePath));
+    }
+
+    /**
+     * Parses a CSV file by scanning its raw UTF-8 bytes instead of decoding it through a Reader.
+     * Field boundaries are found on the bytes and only field contents are decoded, which
+     * produces the same records as {@link #parse(String)} with less work per character.
+     * @param filePath Path to the CSV file
+     * @return List of string arrays representing the CSV data
+     * @throws CSVParserException If an error occurs during parsing
+     */
+    public List<String[]> parseUtf8(String filePath) throws CSVParserException {
+        return readAll(openUtf8Reader(filePath));
+    }
+
+    /**
+     * Parses a CSV file on the common ForkJoinPool.
+     * @param filePath Path to the CSV file
+     * @return List of string arrays representing the CSV data, in file order
+     * @throws CSVParserException If an error occurs during parsing
+     * @see #parseParallel(String, ForkJoinPool)
+     */
+    public List<String[]> parseParallel(String filePath) throws CSVParserException {
+        return parseParallel(filePath, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Parses a CSV file by splitting it into byte ranges that are parsed concurrently.
+     * Each range is moved forward to the start of a record so no row is split between
+     * two tasks. Header detection and validation are then applied in file order, so the
+     * result is the same as {@link #parse(String)}.
+     * @param filePath Path to the CSV file
+     * @param pool The pool that runs the chunk tasks
+     * @return List of string arrays representing the CSV data, in file order
+     * @throws CSVParserException If an error occurs during parsing
+     */
+    public List<String[]> parseParallel(String filePath, ForkJoinPool pool) throws CSVParserException {
+        if (!isAsciiDialect()) {
+            return parse(filePath);
+        }
+        String[] full = null;
+        if ((projection != null && projection.isByName()) || filter != null) {
+            full = readFirstRecord(filePath);
+        }
+        int[] columns = null;
+        if (projection != null) {
+            columns = projection.isByName() ? projection.resolve(full) : projection.positions();
+        }
+        FieldPredicate[] tests = filter != null ? filter.resolve(full) : null;
+        List<List<String[]>> chunks;
+        try {
+            chunks = ParallelParser.parseChunks(this, filePath, columns, tests, stringCache, pool);
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
         List<String[]> records = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(filePath), "UTF-8"))) {
-            String line;
-            boolean firstLine = true;
-            while ((line = br.readLine()) != null) {
-                if (line.trim().isEmpty()) continue; // Skip empty lines
-                String[] row = parseLine(line);
-                if (row.length == 0) continue; // Skip empty rows
-                if (firstLine && isHeaderRow(row)) {
-                    // Handle header if needed
-                    records.add(row);
-                    firstLine = false;
-                } else {
-                    try {
-                        validateRow(row);
-                        records.add(row);
-                    } catch (InvalidDataException e) {
-                        throw new CSVParserException("Invalid data in row: " + e.getMessage(), e);
-                    }
+        for (List<String[]> chunk : chunks) {
+            records.addAll(chunk);
+        }
+        // The first record comes back unfiltered; drop it here if it is data that fails the filter
+        boolean header = !records.isEmpty() && detectHeader(records.get(0), records.subList(1,
+                Math.min(records.size(), 1 + headerDetector.sampleSize())));
+        if (!header && tests != null && !records.isEmpty() && !RowFilter.accepts(full, tests)) {
+            records.remove(0);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            acceptRow(records.get(i), header && i == 0);
+        }
+        if (records.isEmpty()) {
+            throw new CSVParserException("The file is empty or contains no valid data");
+        }
+        return records;
+    }
+
+    /**
+     * Parses a CSV file into a columnar table. Numeric columns are stored in primitive
+     * arrays and text columns in packed char arrays, which takes far less memory than a
+     * String per field. Projection, filtering and validation apply as in {@link #parse(String)}.
+     * Values are kept off the heap when {@link #setColumnStorage(ColumnTable.Storage)} asks
+     * for it; such a table must be closed to release its memory.
+     * @param filePath Path to the CSV file
+     * @return The table
+     * @throws CSVParserException If an error occurs during parsing
+     */
+    public ColumnTable parseColumns(String filePath) throws CSVParserException {
+        ColumnTableBuilder builder = new ColumnTableBuilder(dictionaryEncoding, columnStorage);
+        boolean built = false;
+        try {
+            boolean any = false;
+            try (RowReader reader = openUtf8Reader(filePath)) {
+                CSVRow row = new CSVRow();
+                while (reader.readRow(row)) {
+                    any = true;
+                    builder.add(row);
                 }
             }
-            if (records.isEmpty()) {
+            if (!any) {
+                throw new CSVParserException("The file is empty or contains no valid data");
+            }
+            ColumnTable table = builder.build();
+            built = true;
+            return table;
+        } finally {
+            if (!built) {
+                builder.discard(); // Release direct memory already allocated
+            }
+        }
+    }
+
+    /**
+     * Parses a CSV file into a columnar table, reusing a binary copy of the table saved
+     * next to the file. The first call parses the file as {@link #parseColumns(String)}
+     * does and writes the table to {@code filePath + ".cols"}. Later calls check that the
+     * CSV still has the same path, size, modification time and contents (by CRC-32) and
+     * that the parser settings are the same, and then memory-map the saved columns
+     * instead of parsing. A mapped table is {@link ColumnTable.Storage#OFF_HEAP} and
+     * should be closed when no longer needed. If the saved copy cannot be written, for
+     * example in a read-only directory, the parsed table is still returned. Parsers with
+     * a {@link RowFilter} never use the cache, since predicates cannot be compared.
+     * @param filePath Path to the CSV file
+     * @return The table
+     * @throws CSVParserException If an error occurs during parsing
+     */
+    public ColumnTable parseColumnsCached(String filePath) throws CSVParserException {
+        if (filter != null) {
+            return parseColumns(filePath);
+        }
+        ColumnCache cache = new ColumnCache(filePath, cacheSettings());
+        try {
+            ColumnTable table = cache.load();
+            if (table != null) {
+                return table;
+            }
+        } catch (IOException e) {
+            // Unreadable or damaged sidecar; parse the file and replace it
+        }
+        ColumnTable table = parseColumns(filePath);
+        try {
+            cache.store(table);
+        } catch (IOException e) {
+            // The cache only speeds up later loads, so the parsed table is still returned
+        }
+        return table;
+    }
+
+    /**
+     * Describes the settings that change the table built from a file.
+     */
+    private String cacheSettings() {
+        return "delimiter=" + delimiter + ";quote=" + quoteChar
+                + ";header=" + headerDetector.getClass().getName() + "/" + headerDetector.sampleSize()
+                + ";projection=" + projection + ";dictionary=" + dictionaryEncoding;
+    }
+
+    /**
+     * Returns a sparse row index for a file, for reading windows of rows with
+     * {@link #readRows(String, RowIndex, long, int)}. An index saved next to the file as
+     * {@code filePath + ".idx"} is reused if it has the same interval and the file's size
+     * and modification time have not changed; otherwise the file is scanned and the new
+     * index is saved there. Finding record starts only looks at line breaks and quotes,
+     * so building an index is much faster than parsing the file.
+     * @param filePath Path to the CSV file
+     * @param interval Rows between indexed offsets; reading a window parses at most this
+     *                 many rows before the first one returned
+     * @return The index
+     * @throws CSVParserException If the file cannot be read or the quote character is not ASCII
+     */
+    public RowIndex indexRows(String filePath, int interval) throws CSVParserException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be at least 1");
+        }
+        if (quoteChar >= 0x80) {
+            throw new CSVParserException("Row indexes need an ASCII quote character");
+        }
+        Path file = Paths.get(filePath);
+        try {
+            RowIndex index = RowIndex.load(file);
+            if (index != null && index.getInterval() == interval && index.matches(file, quoteChar)) {
+                return index;
+            }
+            index = RowIndex.build(file, quoteChar, interval, firstRowIsHeader(filePath));
+            try {
+                index.save(file);
+            } catch (IOException e) {
+                // The index still works without being saved; it is rebuilt next time
+            }
+            return index;
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses a window of rows, starting at the indexed row before {@code firstRow} instead
+     * of the start of the file. The rows are the same as in the list returned by
+     * {@link #parse(String)} and are validated the same way. The parser's projection is
+     * applied; its filter is not, since rows are counted by position in the file.
+     * @param filePath Path to the CSV file
+     * @param index The index of the file from {@link #indexRows(String, int)}
+     * @param firstRow Zero-based number of the first row to return
+     * @param count The most rows to return
+     * @return The rows, fewer than {@code count} at the end of the file
+     * @throws CSVParserException If the file has changed since it was indexed, or an error
+     *                            occurs during parsing
+     */
+    public List<String[]> readRows(String filePath, RowIndex index, long firstRow, int count)
+            throws CSVParserException {
+        if (firstRow < 0 || count < 0) {
+            throw new IllegalArgumentException("Row and count cannot be negative");
+        }
+        List<String[]> rows = new ArrayList<>();
+        if (firstRow >= index.getRowCount() || count == 0) {
+            return rows;
+        }
+        int[] columns = null;
+        if (projection != null) {
+            columns = projection.isByName() ? projection.resolve(readFirstRecord(filePath)) : projection.positions();
+        }
+        Path file = Paths.get(filePath);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (!index.matches(file, quoteChar)) {
+                throw new CSVParserException("The file has changed since it was indexed: " + filePath);
+            }
+            long start = index.offsetBefore(firstRow);
+            long rowNumber = firstRow - firstRow % index.getInterval();
+            try (RecordSource source = isAsciiDialect()
+                    ? new MappedRecordSource(this, channel, start, channel.size())
+                    : new CharRecordSource(this, Channels.newReader(channel.position(start), "UTF-8"))) {
+                CSVRow row = new CSVRow();
+                row.cache(stringCache);
+                row.select(new int[0]); // Rows before the window are only scanned for their end
+                while (rowNumber < firstRow && source.next(row)) {
+                    rowNumber++;
+                }
+                row.select(columns);
+                while (rows.size() < count && source.next(row)) {
+                    String[] fields = row.toArray();
+                    acceptRow(fields, index.hasHeader() && rowNumber == 0);
+                    rows.add(fields);
+                    rowNumber++;
+                }
+            }
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+        return rows;
+    }
+
+    /**
+     * Opens a hash index for finding rows by the value of one column. An index saved
+     * next to the file as {@code filePath + "." + column + ".keys"} is reused if the file's
+     * size and modification time have not changed and the first row is still detected
+     * as a header or not as before; otherwise the file is scanned once and the new index
+     * is saved there. A header row is not indexed. Rows found through the
+     * index are validated as in {@link #parse(String)}; the projection and filter do not apply.
+     * One index holds at most about 400 million rows.
+     * @param filePath Path to the CSV file
+     * @param column Zero-based index of the key column
+     * @return The open index, which must be closed
+     * @throws CSVParserException If the file cannot be read, the index cannot be written,
+     *                            the file has too many rows, or the delimiter or quote
+     *                            character is not ASCII
+     */
+    public KeyIndex openKeyIndex(String filePath, int column) throws CSVParserException {
+        if (column < 0) {
+            throw new IllegalArgumentException("Column index cannot be negative: " + column);
+        }
+        if (!isAsciiDialect()) {
+            throw new CSVParserException("Key indexes need an ASCII delimiter and quote character");
+        }
+        try {
+            boolean header = firstRowIsHeader(filePath);
+            KeyIndex index = KeyIndex.open(this, filePath, column, header);
+            if (index == null) {
+                KeyIndex.build(this, filePath, column, header);
+                index = KeyIndex.open(this, filePath, column, header);
+                if (index == null) {
+                    throw new CSVParserException("The file changed while it was being indexed: " + filePath);
+                }
+            }
+            return index;
+        } catch (IOException e) {
+            throw new CSVParserException("Error indexing file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a hash index on a column named in the header row.
+     * @param filePath Path to the CSV file
+     * @param column The name of the key column in the first row
+     * @return The open index, which must be closed
+     * @throws CSVParserException If the column is not in the header, or as for {@link #openKeyIndex(String, int)}
+     * @see #openKeyIndex(String, int)
+     */
+    public KeyIndex openKeyIndex(String filePath, String column) throws CSVParserException {
+        return openKeyIndex(filePath, ColumnProjection.names(column).resolve(readFirstRecord(filePath))[0]);
+    }
+
+    /**
+     * Runs header detection on the first records of a file, before any projection or filter.
+     */
+    private boolean firstRowIsHeader(String filePath) throws IOException {
+        try (CharRecordSource source = new CharRecordSource(this,
+                new InputStreamReader(new FileInputStream(filePath), "UTF-8"))) {
+            CSVRow row = new CSVRow();
+            if (!source.next(row)) {
+                return false;
+            }
+            String[] first = row.toArray();
+            List<String[]> sample = new ArrayList<>();
+            while (sample.size() < headerDetector.sampleSize() && source.next(row)) {
+                sample.add(row.toArray());
+            }
+            return detectHeader(first, sample);
+        }
+    }
+
+    /**
+     * Sorts a CSV file into another file, using memory bounded by {@link #getSortMemory()}.
+     * Files larger than the budget are sorted in runs that are written to temporary files
+     * next to the output and then merged. The sort is stable, and a header row stays first.
+     * Rows are read as in {@link #parse(String)}, with the projection and filter applied,
+     * so key positions refer to the columns of the projected rows. The output is written
+     * like {@link #writeCSV(List, String)}.
+     * @param filePath Path to the CSV file
+     * @param outputPath Path to the output file; may be the same as the input
+     * @param order The columns to sort by
+     * @return The number of rows written, including a header row
+     * @throws CSVParserException If an error occurs during parsing or writing, or a named
+     *                            sort column is not in the header
+     */
+    public long sort(String filePath, String outputPath, SortOrder order) throws CSVParserException {
+        if (order == null) {
+            throw new IllegalArgumentException("Sort order cannot be null");
+        }
+        return new ExternalSorter(this, order, sortMemory, outputPath).sort(filePath, outputPath);
+    }
+
+    /**
+     * Groups the rows of a CSV file by key columns and computes counts, sums, minimums,
+     * maximums and averages per group in one streaming pass. Only the groups are kept in
+     * memory, never the rows; key and value fields are read from the tokenizer's buffer
+     * without creating Strings. Rows are read as in {@link #parse(String)}, with the
+     * projection and filter applied, so column positions refer to the projected rows.
+     * <p>
+     * The result has one row per group, in the order the groups first appear in the file.
+     * Key columns are typed as in {@link #parseColumns(String)} and named as in the header,
+     * or by their position when there is none; aggregates are named like "sum(amount)".
+     * The table uses the {@link #getColumnStorage() column storage} of this parser.
+     * @param filePath Path to the CSV file
+     * @param aggregation The key columns and the aggregates to compute
+     * @return The groups as a columnar table
+     * @throws CSVParserException If an error occurs during parsing, or a named column is
+     *                            not in the header
+     */
+    public ColumnTable aggregate(String filePath, Aggregation aggregation) throws CSVParserException {
+        if (aggregation == null) {
+            throw new IllegalArgumentException("Aggregation cannot be null");
+        }
+        return new GroupAggregator(this, aggregation).aggregate(filePath);
+    }
+
+    /**
+     * Parses a CSV file and passes each row to a handler instead of collecting them.
+     * The same {@link CSVRow} instance is reused for every row.
+     * @param filePath Path to the CSV file
+     * @param handler The handler to call for each row
+     * @return The number of rows passed to the handler
+     * @throws CSVParserException If an error occurs during parsing or the handler fails
+     */
+    public long parse(String filePath, RowHandler handler) throws CSVParserException {
+        long count = 0;
+        try (RowReader reader = openReader(filePath)) {
+            CSVRow row = new CSVRow();
+            while (reader.readRow(row)) {
+                count++;
+                if (!handler.handleRow(row)) break; // Handler asked to stop
+            }
+        }
+        if (count == 0) {
+            throw new CSVParserException("The file is empty or contains no valid data");
+        }
+        return count;
+    }
+
+    /**
+     * Opens a streaming reader over a CSV file.
+     * Rows are parsed one at a time with the same empty line, header and validation
+     * handling as {@link #parse(String)}, so memory use does not grow with the file size.
+     * @param filePath Path to the CSV file
+     * @return A RowReader positioned before the first row
+     * @throws CSVParserException If the file cannot be opened
+     */
+    public RowReader openReader(String filePath) throws CSVParserException {
+        try {
+            return new RowReader(new CharRecordSource(this,
+                    new InputStreamReader(new FileInputStream(filePath), "UTF-8")));
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a streaming reader that reads the file through a memory-mapped view.
+     * @param filePath Path to the CSV file
+     * @return A RowReader positioned before the first row
+     * @throws CSVParserException If the file cannot be opened or mapped
+     * @see #parseMapped(String)
+     */
+    public RowReader openMappedReader(String filePath) throws CSVParserException {
+        if (!isAsciiDialect()) {
+            return openReader(filePath);
+        }
+        try {
+            return new RowReader(new MappedRecordSource(this, filePath));
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Opens a streaming reader that tokenizes the raw UTF-8 bytes of the file.
+     * @param filePath Path to the CSV file
+     * @return A RowReader positioned before the first row
+     * @throws CSVParserException If the file cannot be opened
+     * @see #parseUtf8(String)
+     */
+    public RowReader openUtf8Reader(String filePath) throws CSVParserException {
+        if (!isAsciiDialect()) {
+            return openReader(filePath);
+        }
+        try {
+            return new RowReader(new StreamRecordSource(this, new FileInputStream(filePath)));
+        } catch (IOException e) {
+            throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Checks if the delimiter and quote characters are single-byte in UTF-8, which the
+     * byte-level engines require. Other configurations fall back to the character engine.
+     */
+    boolean isAsciiDialect() {
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (delimiter.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return quoteChar < 0x80;
+    }
+
+    /**
+     * Reads the first record of a file with all of its columns, for resolving named columns
+     * and filtering the first row.
+     */
+    private String[] readFirstRecord(String filePath) throws CSVParserException {
+        try (CharRecordSource source = new CharRecordSource(this,
+                new InputStreamReader(new FileInputStream(filePath), "UTF-8"))) {
+            CSVRow row = new CSVRow();
+            if (!source.next(row)) {
                 throw new CSVParserException("The file is empty or contains no valid data");
             }
+            return row.toArray();
         } catch (IOException e) {
             throw new CSVParserException("Error reading file: " + e.getMessage(), e);
         }
+    }
+
+    private List<String[]> readAll(RowReader rowReader) throws CSVParserException {
+        List<String[]> records = new ArrayList<>();
+        try (RowReader reader = rowReader) {
+            String[] row;
+            while ((row = reader.readRow()) != null) {
+                records.add(row);
+            }
+        }
+        if (records.isEmpty()) {
+            throw new CSVParserException("The file is empty or contains no valid data");
+        }
         return records;
     }
 
@@ -80,30 +726,42 @@ public class CSVParser {
             return new String[0];
         }
 
-        List<String> tokens = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
+        CSVRow row = new CSVRow();
+        parseLine(line, row);
+        return row.toArray();
+    }
+
+    /**
+     * Parses a single CSV line into a reusable row.
+     * @param line The CSV line to parse
+     * @param row The row to fill; its previous contents are discarded
+     */
+    void parseLine(String line, CSVRow row) {
+        row.clear();
         boolean inQuotes = false;
+        char delimiterFirst = delimiterMatcher.first();
+        int delimiterLength = delimiterMatcher.length();
 
         for (int i = 0; i < line.length(); i++) {
             char c = line.charAt(i);
 
             if (c == quoteChar) {
                 if (inQuotes && i + 1 < line.length() && line.charAt(i + 1) == quoteChar) {
-                    sb.append(c);
+                    row.append(c);
                     i++;
                 } else {
                     inQuotes = !inQuotes;
                 }
-            } else if (c == delimiter.charAt(0) && !inQuotes) {
-                tokens.add(sb.toString().trim());
-                sb.setLength(0);
+            } else if (c == delimiterFirst && !inQuotes
+                    && (delimiterLength == 1 || delimiterMatcher.matches(line, i))) {
+                row.endField();
+                i += delimiterLength - 1;
             } else {
-                sb.append(c);
+                row.append(c);
             }
         }
 
-        tokens.add(sb.toString().trim());
-        return tokens.toArray(new String[0]);
+        row.endField();
     }
 
     /**
@@ -122,26 +780,38 @@ public class CSVParser {
                 if (row == null || row.length == 0) {
                     throw new CSVParserException("Invalid row in data");
                 }
-                StringBuilder line = new StringBuilder();
-                for (int i = 0; i < row.length; i++) {
-                    if (row[i].contains(delimiter) || row[i].contains(String.valueOf(quoteChar))) {
-                        line.append(quoteChar).append(row[i].replace(String.valueOf(quoteChar),
-                                String.valueOf(quoteChar) + String.valueOf(quoteChar))).append(quoteChar);
-                    } else {
-                        line.append(row[i]);
-                    }
-                    if (i < row.length - 1) {
-                        line.append(delimiter);
-                    }
-                }
-                bw.write(line.toString());
-                bw.newLine();
+                writeRow(bw, row);
             }
         } catch (IOException e) {
             throw new CSVParserException("Error writing to file: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Writes one row as a CSV line. Fields containing the delimiter, the quote character
+     * or a line break are quoted, so the line parses back to the same fields.
+     * @param bw The writer
+     * @param row The fields of the row
+     * @throws IOException If the line cannot be written
+     */
+    void writeRow(BufferedWriter bw, String[] row) throws IOException {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (row[i].contains(delimiter) || row[i].indexOf(quoteChar) >= 0
+                    || row[i].indexOf('\n') >= 0 || row[i].indexOf('\r') >= 0) {
+                line.append(quoteChar).append(row[i].replace(String.valueOf(quoteChar),
+                        String.valueOf(quoteChar) + String.valueOf(quoteChar))).append(quoteChar);
+            } else {
+                line.append(row[i]);
+            }
+            if (i < row.length - 1) {
+                line.append(delimiter);
+            }
+        }
+        bw.write(line.toString());
+        bw.newLine();
+    }
+
     /**
      * Converts a list of string arrays into a list of maps with header-based keys.
      * @param data The list of string arrays
@@ -170,18 +840,12 @@ public class CSVParser {
 
     /**
      * Checks if a row is a header row based on its content.
+     * Called for the first row of a file when the header detector does not need sample rows.
      * @param row The row to check
      * @return True if the row appears to be a header row
      */
     protected boolean isHeaderRow(String[] row) {
-        // Implement your header detection logic here
-        // For example, check if all elements are alphabetic
-        for (String field : row) {
-            if (!field.matches("[a-zA-Z]+")) {
-                return false;
-            }
-        }
-        return true;
+        return headerDetector.isHeader(row, Collections.<String[]>emptyList());
     }
 
     /**
@@ -196,6 +860,260 @@ public class CSVParser {
         // Add additional validation logic as needed
     }
 
+    /**
+     * Validates a reusable row against expected criteria. Used by {@link #parse(String, RowHandler)},
+     * {@link RowReader#readRow(CSVRow)} and the columnar, sort, index and aggregate paths.
+     * If a subclass overrides {@link #validateRow(String[])}, the row is copied to an array
+     * and passed to that method, so its checks apply on every path; otherwise the row is
+     * checked in place. Subclasses can override this method to validate without the copy.
+     * @param row The row to validate
+     * @throws InvalidDataException If validation fails
+     */
+    protected void validateRow(CSVRow row) throws InvalidDataException {
+        if (validatesArrays) {
+            validateRow(row == null ? null : row.toArray());
+            return;
+        }
+        if (row == null || row.size() == 0) {
+            throw new InvalidDataException("Empty row found");
+        }
+    }
+
+    /**
+     * Checks if a subclass overrides {@link #validateRow(String[])}.
+     */
+    private static boolean overridesArrayValidation(Class<?> type) {
+        for (Class<?> c = type; c != CSVParser.class; c = c.getSuperclass()) {
+            try {
+                c.getDeclaredMethod("validateRow", String[].class);
+                return true;
+            } catch (NoSuchMethodException e) {
+                // Not declared at this level
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Callback for {@link #parse(String, RowHandler)}.
+     */
+    public interface RowHandler {
+        /**
+         * Handles one parsed row. The row is reused for the next record, so copy
+         * any values that must outlive this call.
+         * @param row The current row
+         * @return True to continue parsing, false to stop
+         * @throws CSVParserException To abort parsing with an error
+         */
+        boolean handleRow(CSVRow row) throws CSVParserException;
+    }
+
+    /**
+     * Decides whether the first row of a file is a header row.
+     * @param first The first row
+     * @param sample The rows that follow it, up to the detector's sample size
+     * @return True if the first row is a header row
+     */
+    private boolean detectHeader(String[] first, List<String[]> sample) {
+        if (headerDetector.sampleSize() == 0) {
+            return isHeaderRow(first);
+        }
+        return headerDetector.isHeader(first, sample);
+    }
+
+    /**
+     * Validates a parsed row unless it is the header row.
+     * @param row The row to check
+     * @param header Whether the row was recognized as the header row
+     * @throws CSVParserException If the row fails validation
+     */
+    void acceptRow(String[] row, boolean header) throws CSVParserException {
+        if (header) {
+            // Handle header if needed
+            return;
+        }
+        try {
+            validateRow(row);
+        } catch (InvalidDataException e) {
+            throw new CSVParserException("Invalid data in row: " + e.getMessage(), e);
+        }
+    }
+
+    private void acceptRow(CSVRow row, boolean header) throws CSVParserException {
+        if (header) {
+            return;
+        }
+        try {
+            validateRow(row);
+        } catch (InvalidDataException e) {
+            throw new CSVParserException("Invalid data in row: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Supplies raw records to a {@link RowReader}, with empty records already skipped.
+     */
+    interface RecordSource extends Closeable {
+        /**
+         * Reads the next record into a row.
+         * @param row The row to fill
+         * @return True if a record was read, false at the end of the input
+         * @throws IOException If the input cannot be read
+         */
+        boolean next(CSVRow row) throws IOException;
+    }
+
+    /**
+     * A closeable cursor that parses one row per call to {@link #readRow()}.
+     */
+    public class RowReader implements AutoCloseable {
+        private final RecordSource source;
+        private final CSVRow scratch = new CSVRow();
+        private final ArrayDeque<String[]> lookahead = new ArrayDeque<>();
+        private final ColumnProjection projection = CSVParser.this.projection;
+        private final RowFilter filter = CSVParser.this.filter;
+        private final StringCache strings = stringCache;
+        private int[] columns;
+        private FieldPredicate[] tests;
+        private boolean firstRow = true;
+        private boolean header;
+        private long rowIndex;
+
+        RowReader(RecordSource source) {
+            this.source = source;
+            this.columns = projection != null ? projection.positions() : null;
+        }
+
+        /**
+         * Reads and validates the next row.
+         * @return The next row, or null when the end of the file is reached
+         * @throws CSVParserException If an error occurs during parsing
+         */
+        public String[] readRow() throws CSVParserException {
+            if (!advance(scratch)) {
+                return null;
+            }
+            String[] row = scratch.toArray();
+            acceptRow(row, header);
+            return row;
+        }
+
+        /**
+         * Reads and validates the next row into a reusable row object. Once the row's
+         * buffers have grown to fit the data, this allocates nothing per row.
+         * @param row The row to fill
+         * @return True if a row was read, false when the end of the file is reached
+         * @throws CSVParserException If an error occurs during parsing
+         */
+        public boolean readRow(CSVRow row) throws CSVParserException {
+            if (!advance(row)) {
+                return false;
+            }
+            acceptRow(row, header);
+            return true;
+        }
+
+        /**
+         * Moves to the next row that passes the filter and numbers it.
+         */
+        private boolean advance(CSVRow row) throws CSVParserException {
+            header = false;
+            if (firstRow) {
+                firstRow = false;
+                if (!readFirstRow(row)) {
+                    return false;
+                }
+            } else if (!nextRecord(row)) {
+                return false;
+            }
+            row.setRowIndex(rowIndex++);
+            row.setHeader(header);
+            return true;
+        }
+
+        /**
+         * Reads the first record with all of its columns, so that named columns can be
+         * resolved and header detection sees it before any filter is applied.
+         */
+        private boolean readFirstRow(CSVRow row) throws CSVParserException {
+            if (!readSource(row, false)) {
+                return false;
+            }
+            String[] full = row.toArray();
+            if (projection != null) {
+                columns = projection.resolve(full);
+            }
+            if (filter != null) {
+                tests = filter.resolve(full);
+            }
+            String[] first = columns != null ? ColumnProjection.apply(full, columns) : full;
+            header = detectFirstRow(first);
+            if (!header && tests != null && !RowFilter.accepts(full, tests)) {
+                return nextRecord(row); // The first row is data and fails the filter
+            }
+            if (columns != null) {
+                row.set(first);
+            }
+            return true;
+        }
+
+        /**
+         * Runs header detection on the first row. Rows read ahead as a sample for the
+         * detector are kept and returned by the following reads.
+         */
+        private boolean detectFirstRow(String[] first) throws CSVParserException {
+            int sampleSize = headerDetector.sampleSize();
+            CSVRow sampleRow = new CSVRow();
+            while (lookahead.size() < sampleSize && readSource(sampleRow, true)) {
+                lookahead.add(sampleRow.toArray());
+            }
+            return detectHeader(first, new ArrayList<>(lookahead));
+        }
+
+        private boolean nextRecord(CSVRow row) throws CSVParserException {
+            String[] pending = lookahead.poll();
+            if (pending != null) {
+                row.set(pending);
+                return true;
+            }
+            return readSource(row, true);
+        }
+
+        /**
+         * Reads the next record from the source.
+         * @param row The row to fill
+         * @param filtered Whether to apply the projection and skip rows rejected by the filter
+         */
+        private boolean readSource(CSVRow row, boolean filtered) throws CSVParserException {
+            row.select(filtered ? columns : null);
+            row.filter(filtered ? tests : null);
+            row.cache(strings);
+            try {
+                while (source.next(row)) {
+                    if (row.accepted()) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (IOException e) {
+                throw new CSVParserException("Error reading file: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * Closes the underlying file.
+         * @throws CSVParserException If the file cannot be closed
+         */
+        @Override
+        public void close() throws CSVParserException {
+            try {
+                source.close();
+            } catch (IOException e) {
+                throw new CSVParserException("Error closing file: " + e.getMessage(), e);
+            }
+        }
+    }
+
     /**
      * Exception class for CSV parsing errors.
      */
@@ -0,0 +1,497 @@
+// by Luminaw
+// A reusable view of a single parsed CSV row.
+// The parser refills the same instance for every record instead of allocating a new array.
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.util.Arrays;
+
+/**
+ * A reusable view of a single parsed CSV row.
+ * Field contents are kept in one shared char buffer with their offsets in an int[], and a
+ * String is only created when {@link #get(int)} is called. Once the buffers have grown to
+ * fit the widest record, refilling a row allocates nothing. Instances are refilled by the
+ * parser for each record, so callers that need to keep values beyond the current callback
+ * must copy them (for example with {@link #toArray()}).
+ * <p>
+ * When the parser has a {@link ColumnProjection}, each source column is mapped to an
+ * output slot as it ends, and the characters of unselected columns are never kept.
+ * A {@link RowFilter} is checked the same way: each tested field is passed to its
+ * predicate as it ends, and after a failure the rest of the record is not copied.
+ */
+public final class CSVRow {
+    private char[] data = new char[256];
+    private int dataLength;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private FieldView[] views = new FieldView[16];
+    private CharBuffer decodeTarget = CharBuffer.wrap(data);
+    private int size;
+    private int fieldStart;
+    private int[] selection;
+    private int[] slots;
+    private int column;
+    private FieldPredicate[] tests;
+    private boolean rejected;
+    private final FieldView probe = new FieldView();
+    private StringCache strings;
+    private long rowIndex = -1;
+    private boolean header;
+
+    /**
+     * Returns the number of fields in the row.
+     * @return The field count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value of a field as a String. If the parser has a {@link StringCache},
+     * a value that is already cached is returned as the cached instance.
+     * @param column Zero-based column index
+     * @return The field value
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public String get(int column) {
+        checkColumn(column);
+        int start = starts[column];
+        int end = ends[column];
+        if (start == end) {
+            return "";
+        }
+        return strings != null ? strings.get(data, start, end) : new String(data, start, end - start);
+    }
+
+    /**
+     * Returns a view of a field without copying it. The view reads the row's buffer
+     * directly, and the same view object is returned for the column on every row, so it
+     * is only valid until the row is refilled with the next record.
+     * @param column Zero-based column index
+     * @return The field contents
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public CharSequence field(int column) {
+        checkColumn(column);
+        if (column >= views.length) {
+            views = Arrays.copyOf(views, Math.max(views.length * 2, column + 1));
+        }
+        FieldView view = views[column];
+        if (view == null) {
+            view = new FieldView();
+            views[column] = view;
+        }
+        view.offset = starts[column];
+        view.length = ends[column] - starts[column];
+        return view;
+    }
+
+    /**
+     * Checks if a field is empty.
+     * @param column Zero-based column index
+     * @return True if the field has no characters
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public boolean isEmpty(int column) {
+        checkColumn(column);
+        return starts[column] == ends[column];
+    }
+
+    /**
+     * Decodes a field as an int without creating a String.
+     * @param column Zero-based column index
+     * @return The field value
+     * @throws NumberFormatException If the field is not an integer or does not fit in an int
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public int getInt(int column) {
+        checkColumn(column);
+        try {
+            return FieldDecoder.parseInt(data, starts[column], ends[column]);
+        } catch (NumberFormatException e) {
+            throw columnError(column, e);
+        }
+    }
+
+    /**
+     * Decodes a field as a long without creating a String.
+     * @param column Zero-based column index
+     * @return The field value
+     * @throws NumberFormatException If the field is not an integer or does not fit in a long
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public long getLong(int column) {
+        checkColumn(column);
+        try {
+            return FieldDecoder.parseLong(data, starts[column], ends[column]);
+        } catch (NumberFormatException e) {
+            throw columnError(column, e);
+        }
+    }
+
+    /**
+     * Decodes a field as a double without creating a String. Accepts decimal and
+     * exponent notation as well as "NaN" and "Infinity"; the result is the same as
+     * {@link Double#parseDouble(String)} for those inputs.
+     * @param column Zero-based column index
+     * @return The field value
+     * @throws NumberFormatException If the field is not a decimal number
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public double getDouble(int column) {
+        checkColumn(column);
+        try {
+            return FieldDecoder.parseDouble(data, starts[column], ends[column]);
+        } catch (NumberFormatException e) {
+            throw columnError(column, e);
+        }
+    }
+
+    /**
+     * Decodes a field as a boolean. Only "true" and "false" are accepted, ignoring case.
+     * @param column Zero-based column index
+     * @return The field value
+     * @throws IllegalArgumentException If the field is neither "true" nor "false"
+     * @throws IndexOutOfBoundsException If the column does not exist in this row
+     */
+    public boolean getBoolean(int column) {
+        checkColumn(column);
+        try {
+            return FieldDecoder.parseBoolean(data, starts[column], ends[column]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Column " + column + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the zero-based position of this row among the rows produced by the parser.
+     * @return The row index
+     */
+    public long getRowIndex() {
+        return rowIndex;
+    }
+
+    /**
+     * Checks if the parser treated this row as a header row.
+     * @return True if the row is a header row
+     */
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * Copies the fields of this row into a new array.
+     * @return Array of strings holding the current field values
+     */
+    public String[] toArray() {
+        String[] result = new String[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = get(i);
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    void clear() {
+        size = 0;
+        dataLength = 0;
+        fieldStart = 0;
+        column = 0;
+        rejected = false;
+        header = false;
+        if (slots != null) {
+            // Selected columns missing from a short record read as empty
+            size = selection.length;
+            Arrays.fill(starts, 0, size, 0);
+            Arrays.fill(ends, 0, size, 0);
+        }
+    }
+
+    /**
+     * Sets the cache that {@link #get(int)} looks values up in.
+     * @param strings The cache, or null to always create a new String
+     */
+    void cache(StringCache strings) {
+        this.strings = strings;
+    }
+
+    /**
+     * Restricts the row to a set of source columns. Unselected fields are dropped when they end.
+     * @param columns Resolved column positions in output order, or null for all columns
+     */
+    void select(int[] columns) {
+        if (columns == selection) {
+            return;
+        }
+        selection = columns;
+        if (columns == null) {
+            slots = null;
+            return;
+        }
+        int max = 0;
+        for (int c : columns) {
+            max = Math.max(max, c);
+        }
+        slots = new int[max + 1];
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < columns.length; i++) {
+            slots[columns[i]] = i;
+        }
+        if (starts.length < columns.length) {
+            starts = Arrays.copyOf(starts, columns.length);
+            ends = Arrays.copyOf(ends, columns.length);
+        }
+    }
+
+    /**
+     * Checks if the field being read will be kept, so tokenizers can skip copying it.
+     * @return True if the current source column is selected
+     */
+    boolean keepsField() {
+        if (slots == null && tests == null) {
+            return true;
+        }
+        if (rejected) {
+            return false;
+        }
+        return slots == null || (column < slots.length && slots[column] >= 0)
+                || (tests != null && column < tests.length && tests[column] != null);
+    }
+
+    /**
+     * Checks if any selected or tested column comes after the current one.
+     * @return False once the rest of the record can be ignored
+     */
+    boolean needsMoreFields() {
+        if (slots == null && tests == null) {
+            return true;
+        }
+        if (rejected) {
+            return false;
+        }
+        return slots == null || column < slots.length || (tests != null && column < tests.length);
+    }
+
+    /**
+     * Sets the predicates tested as fields end.
+     * @param tests Predicates indexed by source column, or null to accept every record
+     */
+    void filter(FieldPredicate[] tests) {
+        this.tests = tests;
+    }
+
+    /**
+     * Checks if the record just read passed the filter. Tested columns that the record
+     * does not have are tested as empty values.
+     * @return True if the row should be kept
+     */
+    boolean accepted() {
+        if (rejected) {
+            return false;
+        }
+        if (tests != null) {
+            for (int c = column; c < tests.length; c++) {
+                if (tests[c] != null && !tests[c].test("")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    void append(char c) {
+        if (dataLength == data.length) {
+            grow(dataLength + 1);
+        }
+        data[dataLength++] = c;
+    }
+
+    /**
+     * Refills the row from already parsed values.
+     * @param fields The field values; they are expected to be trimmed
+     */
+    void set(String[] fields) {
+        // The values are already projected, so bypass the column selection
+        int[] savedSlots = slots;
+        FieldPredicate[] savedTests = tests;
+        slots = null;
+        tests = null;
+        clear();
+        for (String field : fields) {
+            for (int i = 0; i < field.length(); i++) {
+                append(field.charAt(i));
+            }
+            endField();
+        }
+        slots = savedSlots;
+        tests = savedTests;
+    }
+
+    /**
+     * Appends ASCII bytes to the current field.
+     * @param bytes The source buffer; every byte in the range must be below 0x80
+     * @param start Index of the first byte
+     * @param end Index just past the last byte
+     */
+    void appendAscii(byte[] bytes, int start, int end) {
+        int count = end - start;
+        if (dataLength + count > data.length) {
+            grow(dataLength + count);
+        }
+        char[] d = data;
+        int offset = dataLength - start;
+        for (int i = start; i < end; i++) {
+            d[offset + i] = (char) bytes[i];
+        }
+        dataLength += count;
+    }
+
+    /**
+     * Decodes bytes into the current field without an intermediate String.
+     * @param decoder A decoder set to replace malformed input
+     * @param in The bytes to decode; consumed by this call
+     */
+    void append(CharsetDecoder decoder, ByteBuffer in) {
+        // Reserve the decoder's worst case so decoding never overflows the buffer
+        int needed = dataLength + (int) Math.ceil(in.remaining() * (double) decoder.maxCharsPerByte());
+        if (needed > data.length) {
+            grow(needed);
+        }
+        decodeTarget.limit(data.length).position(dataLength);
+        decoder.reset();
+        decoder.decode(in, decodeTarget, true);
+        decoder.flush(decodeTarget);
+        dataLength = decodeTarget.position();
+    }
+
+    /**
+     * Ends the current field. The characters appended since the previous field are
+     * trimmed the same way as {@link String#trim()}.
+     */
+    void endField() {
+        int start = fieldStart;
+        int end = dataLength;
+        while (start < end && data[start] <= ' ') start++;
+        while (end > start && data[end - 1] <= ' ') end--;
+        int col = column++;
+        if (tests != null && col < tests.length && tests[col] != null && !rejected) {
+            rejected = !test(tests[col], start, end);
+        }
+        int slot;
+        if (slots == null) {
+            slot = size;
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            size++;
+        } else {
+            slot = col < slots.length ? slots[col] : -1;
+            if (slot < 0) {
+                dataLength = fieldStart;
+                return;
+            }
+        }
+        starts[slot] = start;
+        ends[slot] = end;
+        dataLength = end;
+        fieldStart = end;
+    }
+
+    char[] buffer() {
+        return data;
+    }
+
+    int start(int column) {
+        return starts[column];
+    }
+
+    int end(int column) {
+        return ends[column];
+    }
+
+    void setRowIndex(long rowIndex) {
+        this.rowIndex = rowIndex;
+    }
+
+    void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    private void grow(int minCapacity) {
+        data = Arrays.copyOf(data, Math.max(data.length * 2, minCapacity));
+        decodeTarget = CharBuffer.wrap(data);
+    }
+
+    private NumberFormatException columnError(int column, NumberFormatException cause) {
+        NumberFormatException e = new NumberFormatException("Column " + column + ": " + cause.getMessage());
+        e.initCause(cause);
+        return e;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= size) {
+            throw new IndexOutOfBoundsException("Column " + column + " out of range for row with " + size + " fields");
+        }
+    }
+
+    /**
+     * Tests a field in the buffer, decoding numeric ranges in place and passing other
+     * predicates a view of the buffer instead of a String.
+     */
+    private boolean test(FieldPredicate test, int start, int end) {
+        if (test instanceof NumericPredicate) {
+            return ((NumericPredicate) test).test(data, start, end);
+        }
+        if (test instanceof AndPredicate) {
+            for (FieldPredicate part : ((AndPredicate) test).parts()) {
+                if (!test(part, start, end)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        probe.offset = start;
+        probe.length = end - start;
+        return test.test(probe);
+    }
+
+    /**
+     * A read-only window over part of the row's buffer.
+     */
+    private final class FieldView implements CharSequence {
+        private int offset;
+        private int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of range for length " + length);
+            }
+            return data[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of range for length " + length);
+            }
+            return new String(data, offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(data, offset, length);
+        }
+    }
+}
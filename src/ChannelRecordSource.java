@@ -0,0 +1,56 @@
+// by Luminaw
+// Reads CSV records from any position of a file channel, for single-record lookups.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * A record source that reads blocks from a file channel with positioned reads, and can
+ * be moved to another record start with {@link #seek(long)}. Reading one record costs a
+ * read or two of a small block, so it suits random access better than a mapped window.
+ */
+class ChannelRecordSource extends ByteRecordSource {
+    private static final int BLOCK_SIZE = 8 * 1024;
+
+    private final FileChannel channel;
+    private long nextPosition;
+
+    ChannelRecordSource(CSVParser parser, FileChannel channel) {
+        super(parser);
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.limit(0);
+    }
+
+    /**
+     * Moves to a record start.
+     * @param position Offset of the first byte of a record
+     */
+    void seek(long position) {
+        nextPosition = position;
+        bufferStart = position;
+        buffer.clear().limit(0);
+        restart();
+    }
+
+    @Override
+    protected boolean nextBuffer() throws IOException {
+        buffer.clear();
+        int read = channel.read(buffer, nextPosition);
+        if (read <= 0) {
+            buffer.limit(0);
+            return false;
+        }
+        buffer.flip();
+        bufferStart = nextPosition;
+        nextPosition += read;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
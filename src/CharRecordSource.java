@@ -0,0 +1,145 @@
+// by Luminaw
+// Reads CSV records from a character stream with a single-pass state machine.
+// Quote state is carried across physical lines, so quoted fields may contain line breaks.
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A record source that tokenizes a {@link Reader} directly from a char buffer.
+ * Records end at "\n", "\r" or "\r\n" outside quotes; inside quotes line breaks are kept
+ * as part of the field. Fields are trimmed and unescaped exactly as in
+ * {@link CSVParser#parseLine(String)} and are written straight into the row's buffer;
+ * no Strings are created while reading. Fields the row does not select are scanned but not copied.
+ */
+class CharRecordSource implements CSVParser.RecordSource {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final DelimiterMatcher delimiterMatcher;
+    private final int delimiterLength;
+    private final char quote;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private boolean skipLF;
+    private boolean eof;
+
+    CharRecordSource(CSVParser parser, Reader reader) {
+        this.reader = reader;
+        this.delimiterMatcher = parser.getDelimiterMatcher();
+        this.delimiterLength = delimiterMatcher.length();
+        this.delimiter = delimiterMatcher.first();
+        this.quote = parser.getQuoteChar();
+    }
+
+    @Override
+    public boolean next(CSVRow row) throws IOException {
+        while (true) {
+            row.clear();
+            boolean inQuotes = false;
+            boolean closedQuote = false;
+            boolean nonBlank = false;
+            boolean any = false;
+            boolean copy = row.keepsField();
+
+            scan:
+            while (true) {
+                if (pos == limit && !fill()) {
+                    if (!any) {
+                        return false;
+                    }
+                    break;
+                }
+                if (skipLF) {
+                    skipLF = false;
+                    if (buf[pos] == '\n') {
+                        pos++;
+                        continue;
+                    }
+                }
+                any = true;
+                char[] b = buf;
+                int i = pos;
+                int end = limit;
+                while (i < end) {
+                    char c = b[i++];
+                    if (c > ' ') {
+                        nonBlank = true;
+                    }
+                    if (c == quote) {
+                        if (closedQuote) {
+                            // A quote right after a closing quote is an escaped quote
+                            if (copy) row.append(c);
+                            closedQuote = false;
+                            inQuotes = true;
+                        } else {
+                            closedQuote = inQuotes;
+                            inQuotes = !inQuotes;
+                        }
+                        continue;
+                    }
+                    closedQuote = false;
+                    if (inQuotes) {
+                        if (copy) row.append(c);
+                    } else if (c == delimiter) {
+                        if (delimiterLength == 1 || delimiterMatcher.matches(b, i - 1, end)) {
+                            row.endField();
+                            copy = row.keepsField();
+                            i += delimiterLength - 1;
+                        } else if (end - (i - 1) < delimiterLength && !eof) {
+                            // The rest of the delimiter may be in the next block; refill and look again
+                            pos = i - 1;
+                            fill();
+                            continue scan;
+                        } else if (copy) {
+                            row.append(c);
+                        }
+                    } else if (c == '\n' || c == '\r') {
+                        skipLF = c == '\r';
+                        pos = i;
+                        break scan;
+                    } else if (copy) {
+                        row.append(c);
+                    }
+                }
+                pos = i;
+            }
+
+            if (nonBlank) {
+                row.endField();
+                return true;
+            }
+            // Skip records that are empty after trimming
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Moves the unread characters to the front of the buffer and reads more after them.
+     * @return True if any characters were read
+     */
+    private boolean fill() throws IOException {
+        int remaining = limit - pos;
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        limit = remaining;
+        int read;
+        do {
+            read = reader.read(buf, limit, buf.length - limit);
+        } while (read == 0);
+        if (read < 0) {
+            eof = true;
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,861 @@
+// by Luminaw
+// One column of a ColumnTable, stored as a primitive array or a packed string buffer.
+
+import java.util.Arrays;
+
+/**
+ * A column of a {@link ColumnTable}. Numeric columns keep their values in a primitive
+ * array and text columns keep all their characters in one shared char array, so a
+ * column costs a few bytes per value instead of a String object per value. Empty
+ * fields are recorded in a null bitmap. With {@link ColumnTable.Storage#OFF_HEAP} the
+ * arrays are kept in direct memory instead of on the Java heap.
+ * <p>
+ * Reading a column through a getter of a wider type is allowed: an INT column can be
+ * read with {@link #getLong(int)} or {@link #getDouble(int)}, and any column with
+ * {@link #getString(int)}. {@link #getString(int)} of a STRING column returns the field
+ * exactly as parsed. A DOUBLE column returns its numbers formatted by
+ * {@link Double#toString(double)}, and holds integers beyond 2^53 in magnitude, such as
+ * 9007199254740993 from a column that also has decimals, rounded to the nearest double.
+ * <p>
+ * A column holds at most {@link #MAX_VALUES} values. A STRING column addresses its chars
+ * with long offsets, so off the heap its total length is not limited; on the heap its
+ * chars are one Java array, which holds at most {@link #MAX_VALUES} chars. Parsing a file
+ * past either limit fails with a {@link CSVParser.CSVParserException}.
+ */
+public abstract class Column {
+    /** Most values in a column, and most chars in a text column on the heap. */
+    public static final int MAX_VALUES = Integer.MAX_VALUE - 8;
+
+    /**
+     * The storage type of a column, chosen from the values seen while parsing.
+     */
+    public enum Type {
+        INT, LONG, DOUBLE, STRING
+    }
+
+    private ColumnMemory.LongArray nulls;
+    ColumnMemory memory;
+    int size;
+    /** Most distinct values to dictionary-encode if this column becomes text; 0 for plain text. */
+    int dictionaryLimit;
+
+    /**
+     * Returns the storage type of the column.
+     * @return The type
+     */
+    public abstract Type getType();
+
+    /**
+     * Returns the number of values in the column, which is the row count of the table.
+     * @return The value count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks if a value is null, meaning the field was empty or missing from its row.
+     * @param row Zero-based row index
+     * @return True if the value is null
+     */
+    public boolean isNull(int row) {
+        checkRow(row);
+        int word = row >>> 6;
+        return word < nulls.capacity() && (nulls.get(word) & (1L << row)) != 0;
+    }
+
+    /**
+     * Returns a value of an INT column.
+     * @param row Zero-based row index
+     * @return The value, or 0 for a null
+     * @throws UnsupportedOperationException If the column is not an INT column
+     */
+    public int getInt(int row) {
+        throw unsupported("int");
+    }
+
+    /**
+     * Returns a value of an INT or LONG column.
+     * @param row Zero-based row index
+     * @return The value, or 0 for a null
+     * @throws UnsupportedOperationException If the column is not an integer column
+     */
+    public long getLong(int row) {
+        throw unsupported("long");
+    }
+
+    /**
+     * Returns a value of a numeric column.
+     * @param row Zero-based row index
+     * @return The value, or 0 for a null
+     * @throws UnsupportedOperationException If the column is a STRING column
+     */
+    public double getDouble(int row) {
+        throw unsupported("double");
+    }
+
+    /**
+     * Returns a value as text. Numbers are formatted with {@link Long#toString(long)} or
+     * {@link Double#toString(double)}.
+     * @param row Zero-based row index
+     * @return The value, or an empty string for a null
+     */
+    public abstract String getString(int row);
+
+    /**
+     * Checks if the column stores its values as codes into a dictionary of distinct values.
+     * @return True for a dictionary-encoded STRING column
+     */
+    public boolean isDictionaryEncoded() {
+        return false;
+    }
+
+    /**
+     * Returns the dictionary code of a value in a dictionary-encoded column.
+     * @param row Zero-based row index
+     * @return The index of the value in {@link #getDictionary()}, or -1 for a null
+     * @throws UnsupportedOperationException If the column is not dictionary-encoded
+     */
+    public int getCode(int row) {
+        throw new UnsupportedOperationException("Column is not dictionary-encoded");
+    }
+
+    /**
+     * Returns the distinct values of a dictionary-encoded column, indexed by code.
+     * @return A copy of the dictionary
+     * @throws UnsupportedOperationException If the column is not dictionary-encoded
+     */
+    public String[] getDictionary() {
+        throw new UnsupportedOperationException("Column is not dictionary-encoded");
+    }
+
+    /**
+     * Appends a field value, changing the storage type if the value does not fit.
+     * @param buf Buffer holding the trimmed field
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return This column, or a new column of a wider type holding all values so far
+     */
+    abstract Column append(char[] buf, int start, int end);
+
+    /**
+     * Appends a null value.
+     */
+    abstract void appendNull();
+
+    /**
+     * Releases unused capacity once the column is complete.
+     */
+    void trim() {
+        nulls.trim((size + 63) >>> 6);
+    }
+
+    /**
+     * Releases the values, but not the null bitmap, once they have been copied to a wider column.
+     */
+    abstract void freeValues();
+
+    final void markNull(int row) {
+        int word = row >>> 6;
+        nulls.ensure(word + 1);
+        nulls.set(word, nulls.get(word) | 1L << row);
+    }
+
+    final void initState(ColumnMemory memory) {
+        this.memory = memory;
+        nulls = memory.longs(1);
+    }
+
+    /**
+     * Sets up a column from stored arrays, for example ones mapped from a cache file.
+     */
+    final void initState(ColumnMemory memory, ColumnMemory.LongArray nulls, int size) {
+        this.memory = memory;
+        this.nulls = nulls;
+        this.size = size;
+    }
+
+    /**
+     * Takes over the memory, null bitmap and settings of the column being widened.
+     */
+    final void copyState(Column from) {
+        memory = from.memory;
+        nulls = from.nulls;
+        dictionaryLimit = from.dictionaryLimit;
+    }
+
+    /**
+     * Converts this column to text, dictionary-encoded if the column allows it.
+     */
+    final Column toText() {
+        return dictionaryLimit > 0 ? new DictionaryColumn(this) : new StringColumn(this);
+    }
+
+    /**
+     * Returns the text a value was parsed from, for converting the column to text.
+     */
+    String text(int row) {
+        return getString(row);
+    }
+
+    final void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " out of range for column with " + size + " values");
+        }
+    }
+
+    private UnsupportedOperationException unsupported(String type) {
+        return new UnsupportedOperationException("Column of type " + getType() + " cannot be read as " + type);
+    }
+
+    /**
+     * Creates an empty column.
+     * @param memory Where the column's values are stored
+     * @param dictionaryLimit Most distinct values to dictionary-encode once the column holds text, or 0
+     * @param text Whether the column is text from the start instead of starting as INT
+     * @return The column
+     */
+    static Column create(ColumnMemory memory, int dictionaryLimit, boolean text) {
+        Column column = new IntColumn(memory);
+        column.dictionaryLimit = dictionaryLimit;
+        return text ? column.toText() : column;
+    }
+
+    /**
+     * Returns the capacity to grow an array to: half as large again, but never past
+     * {@link #MAX_VALUES}.
+     * @throws CapacityException If more than {@link #MAX_VALUES} elements are needed
+     */
+    static int capacity(int current, long needed) {
+        if (needed > MAX_VALUES || needed < 0) {
+            throw new CapacityException("Column would need " + needed + " elements in one array; the limit is "
+                    + MAX_VALUES);
+        }
+        return (int) Math.max(needed, Math.min(MAX_VALUES, (long) current + (current >> 1) + 16));
+    }
+
+    /**
+     * Thrown when an array would grow past {@link #MAX_VALUES} elements.
+     */
+    static final class CapacityException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CapacityException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Integers that fit in an int. The starting type of every column.
+     */
+    static final class IntColumn extends Column {
+        private final ColumnMemory.IntArray values;
+
+        IntColumn(ColumnMemory memory) {
+            initState(memory);
+            values = memory.ints(16);
+        }
+
+        IntColumn(ColumnMemory memory, ColumnMemory.LongArray nulls, ColumnMemory.IntArray values, int size) {
+            initState(memory, nulls, size);
+            this.values = values;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.INT;
+        }
+
+        @Override
+        public int getInt(int row) {
+            checkRow(row);
+            return values.get(row);
+        }
+
+        @Override
+        public long getLong(int row) {
+            return getInt(row);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return getInt(row);
+        }
+
+        @Override
+        public String getString(int row) {
+            return isNull(row) ? "" : Integer.toString(values.get(row));
+        }
+
+        @Override
+        Column append(char[] buf, int start, int end) {
+            if (!FieldDecoder.isCanonicalInteger(buf, start, end)) {
+                return isDecimal(buf, start, end) ? new DoubleColumn(this).append(buf, start, end)
+                        : toText().append(buf, start, end);
+            }
+            long value;
+            try {
+                value = FieldDecoder.parseLong(buf, start, end);
+            } catch (NumberFormatException e) {
+                return toText().append(buf, start, end); // More than a long holds
+            }
+            if (value != (int) value) {
+                return new LongColumn(this).append(buf, start, end);
+            }
+            values.ensure(size + 1);
+            values.set(size++, (int) value);
+            return this;
+        }
+
+        @Override
+        void appendNull() {
+            values.ensure(size + 1);
+            markNull(size);
+            values.set(size++, 0);
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            values.trim(size);
+        }
+
+        @Override
+        void freeValues() {
+            values.free();
+        }
+    }
+
+    /**
+     * Integers that need 64 bits.
+     */
+    static final class LongColumn extends Column {
+        private final ColumnMemory.LongArray values;
+
+        LongColumn(IntColumn from) {
+            copyState(from);
+            values = memory.longs(capacity(from.size, from.size + 1));
+            for (int i = 0; i < from.size; i++) {
+                values.set(i, from.values.get(i));
+            }
+            size = from.size;
+            from.freeValues();
+        }
+
+        LongColumn(ColumnMemory memory, ColumnMemory.LongArray nulls, ColumnMemory.LongArray values, int size) {
+            initState(memory, nulls, size);
+            this.values = values;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.LONG;
+        }
+
+        @Override
+        public long getLong(int row) {
+            checkRow(row);
+            return values.get(row);
+        }
+
+        @Override
+        public double getDouble(int row) {
+            return getLong(row);
+        }
+
+        @Override
+        public String getString(int row) {
+            return isNull(row) ? "" : Long.toString(values.get(row));
+        }
+
+        @Override
+        Column append(char[] buf, int start, int end) {
+            long value;
+            if (FieldDecoder.isCanonicalInteger(buf, start, end)) {
+                try {
+                    value = FieldDecoder.parseLong(buf, start, end);
+                } catch (NumberFormatException e) {
+                    return toText().append(buf, start, end);
+                }
+            } else if (isDecimal(buf, start, end)) {
+                return new DoubleColumn(this).append(buf, start, end);
+            } else {
+                return toText().append(buf, start, end);
+            }
+            values.ensure(size + 1);
+            values.set(size++, value);
+            return this;
+        }
+
+        @Override
+        void appendNull() {
+            values.ensure(size + 1);
+            markNull(size);
+            values.set(size++, 0);
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            values.trim(size);
+        }
+
+        @Override
+        void freeValues() {
+            values.free();
+        }
+    }
+
+    /**
+     * Decimal numbers, and integers from a column that also holds decimals. Integers
+     * beyond 2^53 in magnitude are rounded to the nearest double, like any decimal that
+     * a double cannot represent exactly.
+     * <p>
+     * Formatting a double back does not always give the file's text ("1.50" becomes
+     * "1.5"), so while the column is being built it marks the values written as integers
+     * in a bitmap and keeps the text of the few values that neither
+     * {@link Long#toString(long)} nor {@link Double#toString(double)} reproduces. If a
+     * later value is not a number, the column turns into text from the doubles, the
+     * bitmap and those exceptions, so a STRING column always holds exactly the fields that
+     * {@link CSVParser#parse(String)} returns. Both are released by {@link #trim()}, once
+     * the type is final.
+     */
+    static final class DoubleColumn extends Column {
+        /** Magnitude below which a double holds every integer exactly; 2^53 + 1 also rounds to it. */
+        private static final double EXACT = 0x1p53;
+
+        private final ColumnMemory.DoubleArray values;
+        private ColumnMemory.LongArray integers; // Bitmap of values written as integers
+        private int[] exceptionRows = new int[16]; // Rows whose text does not format back, in row order
+        private String[] exceptionTexts = new String[16];
+        private int exceptions;
+
+        DoubleColumn(Column from) {
+            copyState(from);
+            values = memory.doubles(capacity(from.size, from.size + 1));
+            integers = memory.longs(Math.max(1, (from.size + 63) >>> 6));
+            for (int i = 0; i < from.size; i++) {
+                double value = from.getDouble(i);
+                values.set(i, value);
+                if (from.isNull(i)) {
+                    continue;
+                }
+                // INT and LONG columns only hold canonical integers, exact unless they are rounded
+                if (Math.abs(value) < EXACT) {
+                    markInteger(i);
+                } else {
+                    addException(i, from.getString(i));
+                }
+            }
+            size = from.size;
+            from.freeValues();
+        }
+
+        DoubleColumn(ColumnMemory memory, ColumnMemory.LongArray nulls, ColumnMemory.DoubleArray values, int size) {
+            initState(memory, nulls, size);
+            this.values = values;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.DOUBLE;
+        }
+
+        @Override
+        public double getDouble(int row) {
+            checkRow(row);
+            return values.get(row);
+        }
+
+        @Override
+        public String getString(int row) {
+            return isNull(row) ? "" : Double.toString(values.get(row));
+        }
+
+        @Override
+        Column append(char[] buf, int start, int end) {
+            double value = decimalValue(buf, start, end);
+            if (Double.isNaN(value)) {
+                return toText().append(buf, start, end);
+            }
+            values.ensure(size + 1);
+            values.set(size, value);
+            boolean integer = FieldDecoder.isCanonicalInteger(buf, start, end);
+            if (integer ? Math.abs(value) >= EXACT : !matches(Double.toString(value), buf, start, end)) {
+                addException(size, new String(buf, start, end - start));
+            } else if (integer) {
+                markInteger(size);
+            }
+            size++;
+            return this;
+        }
+
+        @Override
+        void appendNull() {
+            values.ensure(size + 1);
+            markNull(size);
+            values.set(size++, 0);
+        }
+
+        /**
+         * Returns the parsed text of a value: its exception, or the double formatted as
+         * an integer or by {@link Double#toString(double)}.
+         */
+        @Override
+        String text(int row) {
+            if (isNull(row) || integers == null) {
+                return getString(row); // Loaded from a cache, so the type is final
+            }
+            int at = Arrays.binarySearch(exceptionRows, 0, exceptions, row);
+            if (at >= 0) {
+                return exceptionTexts[at];
+            }
+            int word = row >>> 6;
+            boolean integer = word < integers.capacity() && (integers.get(word) & (1L << row)) != 0;
+            return integer ? Long.toString((long) values.get(row)) : Double.toString(values.get(row));
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            values.trim(size);
+            releaseText();
+        }
+
+        @Override
+        void freeValues() {
+            values.free();
+            releaseText();
+        }
+
+        private void markInteger(int row) {
+            int word = row >>> 6;
+            integers.ensure(word + 1);
+            integers.set(word, integers.get(word) | 1L << row);
+        }
+
+        private void addException(int row, String text) {
+            if (exceptions == exceptionRows.length) {
+                int capacity = capacity(exceptions, exceptions + 1);
+                exceptionRows = Arrays.copyOf(exceptionRows, capacity);
+                exceptionTexts = Arrays.copyOf(exceptionTexts, capacity);
+            }
+            exceptionRows[exceptions] = row;
+            exceptionTexts[exceptions++] = text;
+        }
+
+        private void releaseText() {
+            if (integers != null) {
+                integers.free();
+                integers = null;
+            }
+            exceptionRows = null;
+            exceptionTexts = null;
+        }
+
+        private static boolean matches(String text, char[] buf, int start, int end) {
+            if (text.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (text.charAt(i) != buf[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Text, packed into one char array with an end offset per value.
+     */
+    static final class StringColumn extends Column {
+        private final ColumnMemory.CharArray chars;
+        private long length;
+        private final ColumnMemory.LongArray ends;
+
+        /**
+         * Converts a column to plain text. Each value gets the text it was parsed from:
+         * INT and LONG columns only hold canonical integers, which format back exactly,
+         * and DOUBLE columns keep the text of the values that do not.
+         */
+        StringColumn(Column from) {
+            copyState(from);
+            chars = memory.chars(256);
+            ends = memory.longs(capacity(from.size, from.size + 1));
+            for (int i = 0; i < from.size; i++) {
+                String value = from.text(i);
+                appendChars(value);
+                ends.set(i, length);
+            }
+            size = from.size;
+            from.freeValues();
+        }
+
+        StringColumn(ColumnMemory memory, ColumnMemory.LongArray nulls, ColumnMemory.CharArray chars,
+                     ColumnMemory.LongArray ends, int size) {
+            initState(memory, nulls, size);
+            this.chars = chars;
+            this.ends = ends;
+            length = size == 0 ? 0 : ends.get(size - 1);
+        }
+
+        @Override
+        public Type getType() {
+            return Type.STRING;
+        }
+
+        @Override
+        public String getString(int row) {
+            checkRow(row);
+            long start = row == 0 ? 0 : ends.get(row - 1);
+            return chars.string(start, (int) (ends.get(row) - start));
+        }
+
+        @Override
+        Column append(char[] buf, int start, int end) {
+            int count = end - start;
+            chars.ensure(length + count);
+            chars.set(length, buf, start, count);
+            length += count;
+            addEnd();
+            return this;
+        }
+
+        @Override
+        void appendNull() {
+            markNull(size);
+            addEnd();
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            chars.trim(length);
+            ends.trim(size);
+        }
+
+        @Override
+        void freeValues() {
+            chars.free();
+            ends.free();
+        }
+
+        private void appendChars(String value) {
+            chars.ensure(length + value.length());
+            chars.set(length, value);
+            length += value.length();
+        }
+
+        private void addEnd() {
+            ends.ensure(size + 1);
+            ends.set(size++, length);
+        }
+    }
+
+    /**
+     * Text stored as an int code per value plus one shared array of distinct values.
+     * Values are looked up by their characters in an open-addressing hash table, so a
+     * value that has been seen before costs no allocation. When the number of distinct
+     * values passes {@link #dictionaryLimit}, or most values turn out to be distinct,
+     * the column switches to plain text storage.
+     */
+    static final class DictionaryColumn extends Column {
+        /** Values after which a column that is mostly distinct stops being encoded. */
+        private static final int SAMPLE = 1024;
+
+        private final ColumnMemory.IntArray codes;
+        private String[] dictionary = new String[16];
+        private int distinct;
+        private int[] table = new int[64]; // Code + 1 per slot, 0 when empty
+
+        DictionaryColumn(Column from) {
+            copyState(from);
+            codes = memory.ints(capacity(from.size, from.size + 1));
+            for (int i = 0; i < from.size; i++) {
+                if (from.isNull(i)) {
+                    codes.set(i, -1);
+                } else {
+                    char[] chars = from.text(i).toCharArray();
+                    codes.set(i, codeOf(chars, 0, chars.length));
+                }
+            }
+            size = from.size;
+            from.freeValues();
+        }
+
+        DictionaryColumn(ColumnMemory memory, ColumnMemory.LongArray nulls, ColumnMemory.IntArray codes,
+                         String[] dictionary, int size) {
+            initState(memory, nulls, size);
+            this.codes = codes;
+            this.dictionary = dictionary;
+            distinct = dictionary.length;
+        }
+
+        @Override
+        public Type getType() {
+            return Type.STRING;
+        }
+
+        @Override
+        public String getString(int row) {
+            checkRow(row);
+            int code = codes.get(row);
+            return code < 0 ? "" : dictionary[code];
+        }
+
+        @Override
+        public boolean isDictionaryEncoded() {
+            return true;
+        }
+
+        @Override
+        public int getCode(int row) {
+            checkRow(row);
+            return codes.get(row);
+        }
+
+        @Override
+        public String[] getDictionary() {
+            return Arrays.copyOf(dictionary, distinct);
+        }
+
+        @Override
+        Column append(char[] buf, int start, int end) {
+            int code = find(buf, start, end);
+            int count = code < 0 ? distinct + 1 : distinct; // Distinct values once this one is in
+            if (count > dictionaryLimit || (dictionaryLimit < Integer.MAX_VALUE
+                    && size >= SAMPLE && count > size / 2)) {
+                // Too many distinct values for a dictionary to pay off; the new value is never added
+                dictionaryLimit = 0;
+                StringColumn plain = new StringColumn(this);
+                return plain.append(buf, start, end);
+            }
+            if (code < 0) {
+                code = add(buf, start, end, -code - 1);
+            }
+            codes.ensure(size + 1);
+            codes.set(size++, code);
+            return this;
+        }
+
+        @Override
+        void appendNull() {
+            codes.ensure(size + 1);
+            markNull(size);
+            codes.set(size++, -1);
+        }
+
+        @Override
+        void trim() {
+            super.trim();
+            codes.trim(size);
+            dictionary = Arrays.copyOf(dictionary, distinct);
+        }
+
+        @Override
+        void freeValues() {
+            codes.free();
+        }
+
+        /**
+         * Finds the code of a value, adding it to the dictionary if it is new.
+         */
+        private int codeOf(char[] buf, int start, int end) {
+            int code = find(buf, start, end);
+            return code >= 0 ? code : add(buf, start, end, -code - 1);
+        }
+
+        /**
+         * Looks a value up without adding it.
+         * @return The value's code, or -(slot + 1) for the empty slot where it belongs
+         */
+        private int find(char[] buf, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + buf[i];
+            }
+            int mask = table.length - 1;
+            int slot = mix(hash) & mask;
+            while (table[slot] != 0) {
+                String value = dictionary[table[slot] - 1];
+                if (equals(value, buf, start, end)) {
+                    return table[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -slot - 1;
+        }
+
+        /**
+         * Adds a new value to the dictionary at the slot returned by {@link #find}.
+         */
+        private int add(char[] buf, int start, int end, int slot) {
+            if (distinct == dictionary.length) {
+                dictionary = Arrays.copyOf(dictionary, distinct * 2);
+            }
+            int code = distinct++;
+            dictionary[code] = new String(buf, start, end - start);
+            table[slot] = code + 1;
+            if (distinct * 2 > table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int code = 0; code < distinct; code++) {
+                // String.hashCode uses the same polynomial as codeOf
+                int slot = mix(dictionary[code].hashCode()) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = code + 1;
+            }
+        }
+
+        private static int mix(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equals(String value, char[] buf, int start, int end) {
+            if (value.length() != end - start) {
+                return false;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                if (value.charAt(i) != buf[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Checks if a range is a finite decimal number that a DOUBLE column can hold.
+     */
+    static boolean isDecimal(char[] buf, int start, int end) {
+        return !Double.isNaN(decimalValue(buf, start, end));
+    }
+
+    /**
+     * Parses a value for a DOUBLE column. Integers must be canonical, as in INT columns,
+     * so that codes such as "007" stay text; numbers with a point or exponent may use any form.
+     * @return The value, or NaN if the column cannot hold it
+     */
+    static double decimalValue(char[] buf, int start, int end) {
+        double value = FieldDecoder.tryParseDouble(buf, start, end);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.NaN;
+        }
+        for (int i = start; i < end; i++) {
+            char c = buf[i];
+            if (c == '.' || c == 'e' || c == 'E') {
+                return value;
+            }
+        }
+        return FieldDecoder.isCanonicalInteger(buf, start, end) ? value : Double.NaN;
+    }
+}
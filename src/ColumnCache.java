@@ -0,0 +1,390 @@
+// by Luminaw
+// Saves a ColumnTable to a binary sidecar file and maps it back without re-parsing the CSV.
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The sidecar cache used by {@link CSVParser#parseColumnsCached(String)}. The sidecar
+ * starts with a key describing the CSV it was built from (absolute path, size,
+ * modification time, CRC-32 of the contents and the parser settings), followed by
+ * the column arrays written in big-endian order and aligned to 8 bytes. Loading
+ * checks the key and then maps the arrays directly, so a cached column costs no
+ * parsing and no copying; only dictionary values are read onto the heap.
+ */
+final class ColumnCache {
+    /** Suffix added to the CSV file name to get the sidecar name. */
+    static final String SUFFIX = ".cols";
+
+    private static final long MAGIC = 0x4353564353563032L; // "CSVCSV02"
+
+    private static final byte INT = 0;
+    private static final byte LONG = 1;
+    private static final byte DOUBLE = 2;
+    private static final byte STRING = 3;
+    private static final byte DICTIONARY = 4;
+
+    private final Path source;
+    private final Path sidecar;
+    private final String settings;
+
+    /**
+     * Constructs a cache for one CSV file.
+     * @param filePath Path to the CSV file
+     * @param settings Description of the parser settings that shape the table
+     */
+    ColumnCache(String filePath, String settings) {
+        this.source = Paths.get(filePath).toAbsolutePath().normalize();
+        this.sidecar = Paths.get(filePath + SUFFIX);
+        this.settings = settings;
+    }
+
+    /**
+     * Maps the sidecar if it exists and was built from the current contents of the CSV
+     * with the same settings.
+     * @return The table, or null if the sidecar is missing or out of date
+     * @throws IOException If the files cannot be read
+     */
+    ColumnTable load() throws IOException {
+        if (!Files.isRegularFile(sidecar)) {
+            return null;
+        }
+        ColumnMemory memory = ColumnMemory.direct();
+        boolean loaded = false;
+        try (FileChannel channel = FileChannel.open(sidecar, StandardOpenOption.READ)) {
+            Input in = new Input(channel);
+            if (in.getLong() != MAGIC || !in.getString().equals(source.toString())
+                    || in.getLong() != Files.size(source)
+                    || in.getLong() != Files.getLastModifiedTime(source).toMillis()
+                    || in.getLong() != checksum(source)
+                    || !in.getString().equals(settings)) {
+                return null;
+            }
+            int rowCount = in.getInt();
+            int columnCount = in.getInt();
+            String[] names = null;
+            int nameCount = in.getInt();
+            if (nameCount >= 0) {
+                names = new String[nameCount];
+                for (int i = 0; i < nameCount; i++) {
+                    names[i] = in.getString();
+                }
+            }
+            Column[] columns = new Column[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                columns[c] = readColumn(in, channel, memory, rowCount);
+            }
+            loaded = true;
+            return new ColumnTable(names, columns, rowCount, ColumnTable.Storage.OFF_HEAP, memory);
+        } finally {
+            if (!loaded) {
+                memory.close();
+            }
+        }
+    }
+
+    /**
+     * Writes a table to the sidecar. The file is written under a temporary name and
+     * then moved into place, so a reader never sees a partly written sidecar.
+     * @param table The table parsed from the CSV
+     * @throws IOException If the sidecar cannot be written
+     */
+    void store(ColumnTable table) throws IOException {
+        // Take the key before writing so a CSV changed meanwhile does not match it
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        long checksum = checksum(source);
+        Path parent = sidecar.toAbsolutePath().getParent();
+        Path temp = File.createTempFile(sidecar.getFileName().toString(), ".tmp", parent.toFile()).toPath();
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                Output out = new Output(channel);
+                out.putLong(MAGIC);
+                out.putString(source.toString());
+                out.putLong(size);
+                out.putLong(modified);
+                out.putLong(checksum);
+                out.putString(settings);
+                out.putInt(table.getRowCount());
+                out.putInt(table.getColumnCount());
+                String[] names = table.columnNames();
+                out.putInt(names != null ? names.length : -1);
+                if (names != null) {
+                    for (String name : names) {
+                        out.putString(name);
+                    }
+                }
+                for (int c = 0; c < table.getColumnCount(); c++) {
+                    writeColumn(out, table.getColumn(c), table.getRowCount());
+                }
+                out.flush();
+            }
+            try {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                Files.move(temp, sidecar, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeColumn(Output out, Column column, int rows) throws IOException {
+        byte kind;
+        if (column.isDictionaryEncoded()) {
+            kind = DICTIONARY;
+        } else {
+            switch (column.getType()) {
+                case INT: kind = INT; break;
+                case LONG: kind = LONG; break;
+                case DOUBLE: kind = DOUBLE; break;
+                default: kind = STRING; break;
+            }
+        }
+        out.putInt(kind);
+        int words = (rows + 63) >>> 6;
+        out.align(words);
+        for (int w = 0; w < words; w++) {
+            long bits = 0;
+            for (int r = w << 6; r < Math.min(rows, (w + 1) << 6); r++) {
+                if (column.isNull(r)) {
+                    bits |= 1L << r;
+                }
+            }
+            out.putLong(bits);
+        }
+        switch (kind) {
+            case INT:
+                out.align(rows);
+                for (int r = 0; r < rows; r++) {
+                    out.putInt(column.getInt(r));
+                }
+                break;
+            case LONG:
+                out.align(rows);
+                for (int r = 0; r < rows; r++) {
+                    out.putLong(column.getLong(r));
+                }
+                break;
+            case DOUBLE:
+                out.align(rows);
+                for (int r = 0; r < rows; r++) {
+                    out.putDouble(column.getDouble(r));
+                }
+                break;
+            case DICTIONARY:
+                String[] dictionary = column.getDictionary();
+                out.putInt(dictionary.length);
+                for (String value : dictionary) {
+                    out.putString(value);
+                }
+                out.align(rows);
+                for (int r = 0; r < rows; r++) {
+                    out.putInt(column.getCode(r));
+                }
+                break;
+            default:
+                long length = 0;
+                for (int r = 0; r < rows; r++) {
+                    length += column.getString(r).length();
+                }
+                out.align(rows);
+                long end = 0;
+                for (int r = 0; r < rows; r++) {
+                    end += column.getString(r).length();
+                    out.putLong(end);
+                }
+                out.align(length);
+                for (int r = 0; r < rows; r++) {
+                    String value = column.getString(r);
+                    for (int i = 0; i < value.length(); i++) {
+                        out.putChar(value.charAt(i));
+                    }
+                }
+                break;
+        }
+    }
+
+    private static Column readColumn(Input in, FileChannel channel, ColumnMemory memory, int rows) throws IOException {
+        int kind = in.getInt();
+        ColumnMemory.LongArray nulls = memory.longs(in.skip(channel, memory, 3));
+        switch (kind) {
+            case INT:
+                return new Column.IntColumn(memory, nulls, memory.ints(in.skip(channel, memory, 2)), rows);
+            case LONG:
+                return new Column.LongColumn(memory, nulls, memory.longs(in.skip(channel, memory, 3)), rows);
+            case DOUBLE:
+                return new Column.DoubleColumn(memory, nulls, memory.doubles(in.skip(channel, memory, 3)), rows);
+            case DICTIONARY:
+                String[] dictionary = new String[in.getInt()];
+                for (int i = 0; i < dictionary.length; i++) {
+                    dictionary[i] = in.getString();
+                }
+                return new Column.DictionaryColumn(memory, nulls, memory.ints(in.skip(channel, memory, 2)),
+                        dictionary, rows);
+            case STRING:
+                ColumnMemory.LongArray ends = memory.longs(in.skip(channel, memory, 3));
+                ColumnMemory.CharArray chars = memory.chars(in.skip(channel, memory, 1));
+                return new Column.StringColumn(memory, nulls, chars, ends, rows);
+            default:
+                throw new IOException("Unknown column kind in " + SUFFIX + " file: " + kind);
+        }
+    }
+
+    /**
+     * Computes the CRC-32 of a file's contents.
+     */
+    static long checksum(Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Buffered writer that tracks its position in the file.
+     */
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4).putInt(value);
+            position += 4;
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8).putLong(value);
+            position += 8;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8).putDouble(value);
+            position += 8;
+        }
+
+        void putChar(char value) throws IOException {
+            ensure(2).putChar(value);
+            position += 2;
+        }
+
+        void putString(String value) throws IOException {
+            putInt(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                putChar(value.charAt(i));
+            }
+        }
+
+        /**
+         * Writes an element count, then pads to a multiple of 8 bytes so the elements
+         * that follow can be mapped in place.
+         */
+        void align(long count) throws IOException {
+            putLong(count);
+            while ((position & 7) != 0) {
+                ensure(1).put((byte) 0);
+                position++;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private ByteBuffer ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+            return buffer;
+        }
+    }
+
+    /**
+     * Buffered reader that tracks its position in the file.
+     */
+    private static final class Input {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        private long position;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+            buffer.flip();
+        }
+
+        int getInt() throws IOException {
+            return require(4).getInt();
+        }
+
+        long getLong() throws IOException {
+            return require(8).getLong();
+        }
+
+        String getString() throws IOException {
+            int length = getInt();
+            if (length < 0) {
+                throw new IOException("Corrupt " + SUFFIX + " file");
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = require(2).getChar();
+            }
+            return new String(chars);
+        }
+
+        /**
+         * Reads an element count written by {@link Output#align(long)}, maps the
+         * elements that follow and moves past them.
+         */
+        ByteBuffer[] skip(FileChannel channel, ColumnMemory memory, int shift) throws IOException {
+            long count = getLong();
+            long start = (position + 7) & ~7L;
+            if (count < 0 || start + (count << shift) > channel.size()) {
+                throw new IOException("Corrupt " + SUFFIX + " file");
+            }
+            ByteBuffer[] pages = memory.map(channel, start, count, shift);
+            position = start + (count << shift);
+            buffer.clear().flip();
+            return pages;
+        }
+
+        private ByteBuffer require(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                buffer.clear();
+                long read = position;
+                while (buffer.position() < bytes) {
+                    int n = channel.read(buffer, read + buffer.position());
+                    if (n < 0) {
+                        throw new IOException("Unexpected end of " + SUFFIX + " file");
+                    }
+                }
+                buffer.flip();
+            }
+            position += bytes;
+            return buffer;
+        }
+    }
+}
@@ -0,0 +1,616 @@
+// by Luminaw
+// Growable primitive arrays for Column values, kept on the heap or in direct memory.
+// Direct memory is allocated in fixed-size pages and released when the table is closed.
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Allocates the arrays that {@link Column}s keep their values in. The heap allocator
+ * returns plain Java arrays. The direct allocator returns arrays made of direct
+ * ByteBuffer pages, which are outside the Java heap so the garbage collector never
+ * scans or copies them; every page is tracked and released by {@link #close()}.
+ * Growing a direct array adds pages instead of copying the values. Direct arrays can
+ * also be read-only views of a memory-mapped file, which is unmapped by {@link #close()}.
+ */
+final class ColumnMemory {
+    /** Elements per direct page; 256 KB pages for int values. */
+    private static final int PAGE_SHIFT = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    /** Largest region mapped at once; a whole number of pages for every element size. */
+    private static final long MAP_WINDOW = 1L << 30;
+
+    static final ColumnMemory HEAP = new ColumnMemory(false);
+
+    // Direct buffers have no public free method before the foreign memory API, so the
+    // buffer's cleaner is run through Unsafe.invokeCleaner (Java 9+) or the cleaner()
+    // method of the buffer itself (Java 8). If neither is available the page is left
+    // to the garbage collector.
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+    private static final Method CLEANER;
+    private static final Method CLEAN;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        Method cleaner = null;
+        Method clean = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            try {
+                cleaner = Class.forName("java.nio.DirectByteBuffer").getMethod("cleaner");
+                cleaner.setAccessible(true);
+                clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                cleaner = null;
+            }
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+        CLEANER = cleaner;
+        CLEAN = clean;
+    }
+
+    private final boolean direct;
+    private final Set<ByteBuffer> pages = Collections.newSetFromMap(new IdentityHashMap<ByteBuffer, Boolean>());
+    private boolean closed;
+
+    private ColumnMemory(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * Creates an allocator for one table's direct memory.
+     * @return The allocator
+     */
+    static ColumnMemory direct() {
+        return new ColumnMemory(true);
+    }
+
+    IntArray ints(int capacity) {
+        return direct ? new DirectIntArray(capacity) : new HeapIntArray(capacity);
+    }
+
+    LongArray longs(int capacity) {
+        return direct ? new DirectLongArray(capacity) : new HeapLongArray(capacity);
+    }
+
+    DoubleArray doubles(int capacity) {
+        return direct ? new DirectDoubleArray(capacity) : new HeapDoubleArray(capacity);
+    }
+
+    CharArray chars(int capacity) {
+        return direct ? new DirectCharArray(capacity) : new HeapCharArray(capacity);
+    }
+
+    /**
+     * Maps part of a file as read-only pages for {@link #ints(ByteBuffer[])} and the other
+     * view factories. Values are read in big-endian order.
+     * @param channel The file
+     * @param position Offset of the first element
+     * @param count Number of elements
+     * @param shift Log2 of the element size in bytes
+     * @return The pages
+     * @throws IOException If the file cannot be mapped
+     */
+    ByteBuffer[] map(FileChannel channel, long position, long count, int shift) throws IOException {
+        int pageBytes = PAGE_SIZE << shift;
+        long bytes = count << shift;
+        ByteBuffer[] result = new ByteBuffer[(int) ((count + PAGE_MASK) >>> PAGE_SHIFT)];
+        int page = 0;
+        for (long offset = 0; offset < bytes; offset += MAP_WINDOW) {
+            int length = (int) Math.min(MAP_WINDOW, bytes - offset);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position + offset, length);
+            track(window);
+            for (int at = 0; at < length; at += pageBytes) {
+                ByteBuffer slice = window.duplicate();
+                slice.limit(Math.min(length, at + pageBytes));
+                slice.position(at);
+                result[page++] = slice.slice();
+            }
+        }
+        return result;
+    }
+
+    IntArray ints(ByteBuffer[] pages) {
+        return new DirectIntArray(new Pages(2, pages));
+    }
+
+    LongArray longs(ByteBuffer[] pages) {
+        return new DirectLongArray(new Pages(3, pages));
+    }
+
+    DoubleArray doubles(ByteBuffer[] pages) {
+        return new DirectDoubleArray(new Pages(3, pages));
+    }
+
+    CharArray chars(ByteBuffer[] pages) {
+        return new DirectCharArray(new Pages(1, pages));
+    }
+
+    /**
+     * Releases every page that is still allocated. Arrays from this allocator must not
+     * be used afterwards; they throw IllegalStateException instead of reading freed memory.
+     */
+    synchronized void close() {
+        closed = true;
+        for (ByteBuffer page : pages) {
+            release(page);
+        }
+        pages.clear();
+    }
+
+    private synchronized ByteBuffer allocate(int bytes) {
+        if (closed) {
+            throw new IllegalStateException("Column memory has been released");
+        }
+        ByteBuffer page = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        pages.add(page);
+        return page;
+    }
+
+    private synchronized void track(MappedByteBuffer window) {
+        if (closed) {
+            release(window);
+            throw new IllegalStateException("Column memory has been released");
+        }
+        pages.add(window);
+    }
+
+    private synchronized void free(ByteBuffer[] freed) {
+        for (ByteBuffer page : freed) {
+            if (page != null && pages.remove(page)) {
+                release(page);
+            }
+        }
+    }
+
+    private static void release(ByteBuffer page) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, page);
+            } else if (CLEANER != null) {
+                Object cleaner = CLEANER.invoke(page);
+                if (cleaner != null) {
+                    CLEAN.invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // Freed when the buffer is garbage collected
+        }
+    }
+
+    /**
+     * A growable array of ints.
+     */
+    abstract static class IntArray {
+        abstract int get(int index);
+        abstract void set(int index, int value);
+        /** Grows the array to hold at least the given number of elements. */
+        abstract void ensure(int capacity);
+        abstract int capacity();
+        /** Releases capacity beyond the given number of elements. */
+        abstract void trim(int size);
+        /** Releases the array; it must not be used afterwards. */
+        void free() {
+        }
+    }
+
+    /**
+     * A growable array of longs.
+     */
+    abstract static class LongArray {
+        abstract long get(int index);
+        abstract void set(int index, long value);
+        abstract void ensure(int capacity);
+        abstract int capacity();
+        abstract void trim(int size);
+        void free() {
+        }
+    }
+
+    /**
+     * A growable array of doubles.
+     */
+    abstract static class DoubleArray {
+        abstract double get(int index);
+        abstract void set(int index, double value);
+        abstract void ensure(int capacity);
+        abstract void trim(int size);
+        void free() {
+        }
+    }
+
+    /**
+     * A growable array of chars. Indexes are longs so that a direct array can hold more
+     * than 2^31 chars; a heap array is one Java array and holds at most
+     * {@link Column#MAX_VALUES} chars.
+     */
+    abstract static class CharArray {
+        abstract void set(long index, char[] buf, int start, int count);
+        abstract void set(long index, String value);
+        abstract String string(long start, int count);
+        abstract void ensure(long capacity);
+        abstract void trim(long size);
+        void free() {
+        }
+    }
+
+    private static final class HeapIntArray extends IntArray {
+        private int[] values;
+
+        HeapIntArray(int capacity) {
+            values = new int[capacity];
+        }
+
+        @Override
+        int get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, int value) {
+            values[index] = value;
+        }
+
+        @Override
+        void ensure(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Column.capacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void trim(int size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class HeapLongArray extends LongArray {
+        private long[] values;
+
+        HeapLongArray(int capacity) {
+            values = new long[capacity];
+        }
+
+        @Override
+        long get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, long value) {
+            values[index] = value;
+        }
+
+        @Override
+        void ensure(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Column.capacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        int capacity() {
+            return values.length;
+        }
+
+        @Override
+        void trim(int size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class HeapDoubleArray extends DoubleArray {
+        private double[] values;
+
+        HeapDoubleArray(int capacity) {
+            values = new double[capacity];
+        }
+
+        @Override
+        double get(int index) {
+            return values[index];
+        }
+
+        @Override
+        void set(int index, double value) {
+            values[index] = value;
+        }
+
+        @Override
+        void ensure(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Column.capacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        void trim(int size) {
+            values = Arrays.copyOf(values, size);
+        }
+    }
+
+    private static final class HeapCharArray extends CharArray {
+        private char[] values;
+
+        HeapCharArray(int capacity) {
+            values = new char[capacity];
+        }
+
+        @Override
+        void set(long index, char[] buf, int start, int count) {
+            System.arraycopy(buf, start, values, (int) index, count);
+        }
+
+        @Override
+        void set(long index, String value) {
+            value.getChars(0, value.length(), values, (int) index);
+        }
+
+        @Override
+        String string(long start, int count) {
+            return new String(values, (int) start, count);
+        }
+
+        @Override
+        void ensure(long capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Column.capacity(values.length, capacity));
+            }
+        }
+
+        @Override
+        void trim(long size) {
+            values = Arrays.copyOf(values, (int) size);
+        }
+    }
+
+    /**
+     * Pages of direct memory holding elements of one size. Element i is at byte
+     * (i & PAGE_MASK) << shift of page i >>> PAGE_SHIFT.
+     */
+    private final class Pages {
+        private final int shift;
+        private ByteBuffer[] pages = new ByteBuffer[0];
+
+        Pages(int shift, long capacity) {
+            this.shift = shift;
+            ensure(capacity);
+        }
+
+        Pages(int shift, ByteBuffer[] pages) {
+            this.shift = shift;
+            this.pages = pages;
+        }
+
+        ByteBuffer page(long index) {
+            if (closed || pages == null) {
+                throw new IllegalStateException("Column memory has been released");
+            }
+            return pages[(int) (index >>> PAGE_SHIFT)];
+        }
+
+        void ensure(long capacity) {
+            int needed = (int) ((capacity + PAGE_MASK) >>> PAGE_SHIFT);
+            if (needed > pages.length) {
+                int old = pages.length;
+                pages = Arrays.copyOf(pages, needed);
+                for (int i = old; i < needed; i++) {
+                    pages[i] = allocate(PAGE_SIZE << shift);
+                }
+            }
+        }
+
+        long capacity() {
+            return (long) pages.length << PAGE_SHIFT;
+        }
+
+        void trim(long size) {
+            int needed = (int) ((size + PAGE_MASK) >>> PAGE_SHIFT);
+            if (needed < pages.length) {
+                ColumnMemory.this.free(Arrays.copyOfRange(pages, needed, pages.length));
+                pages = Arrays.copyOf(pages, needed);
+            }
+        }
+
+        void free() {
+            if (pages != null) {
+                ColumnMemory.this.free(pages);
+                pages = null;
+            }
+        }
+    }
+
+    private final class DirectIntArray extends IntArray {
+        private final Pages pages;
+
+        DirectIntArray(int capacity) {
+            pages = new Pages(2, capacity);
+        }
+
+        DirectIntArray(Pages pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        int get(int index) {
+            return pages.page(index).getInt((index & PAGE_MASK) << 2);
+        }
+
+        @Override
+        void set(int index, int value) {
+            pages.page(index).putInt((index & PAGE_MASK) << 2, value);
+        }
+
+        @Override
+        void ensure(int capacity) {
+            pages.ensure(capacity);
+        }
+
+        @Override
+        int capacity() {
+            return (int) Math.min(Integer.MAX_VALUE, pages.capacity());
+        }
+
+        @Override
+        void trim(int size) {
+            pages.trim(size);
+        }
+
+        @Override
+        void free() {
+            pages.free();
+        }
+    }
+
+    private final class DirectLongArray extends LongArray {
+        private final Pages pages;
+
+        DirectLongArray(int capacity) {
+            pages = new Pages(3, capacity);
+        }
+
+        DirectLongArray(Pages pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        long get(int index) {
+            return pages.page(index).getLong((index & PAGE_MASK) << 3);
+        }
+
+        @Override
+        void set(int index, long value) {
+            pages.page(index).putLong((index & PAGE_MASK) << 3, value);
+        }
+
+        @Override
+        void ensure(int capacity) {
+            pages.ensure(capacity);
+        }
+
+        @Override
+        int capacity() {
+            return (int) Math.min(Integer.MAX_VALUE, pages.capacity());
+        }
+
+        @Override
+        void trim(int size) {
+            pages.trim(size);
+        }
+
+        @Override
+        void free() {
+            pages.free();
+        }
+    }
+
+    private final class DirectDoubleArray extends DoubleArray {
+        private final Pages pages;
+
+        DirectDoubleArray(int capacity) {
+            pages = new Pages(3, capacity);
+        }
+
+        DirectDoubleArray(Pages pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        double get(int index) {
+            return pages.page(index).getDouble((index & PAGE_MASK) << 3);
+        }
+
+        @Override
+        void set(int index, double value) {
+            pages.page(index).putDouble((index & PAGE_MASK) << 3, value);
+        }
+
+        @Override
+        void ensure(int capacity) {
+            pages.ensure(capacity);
+        }
+
+        @Override
+        void trim(int size) {
+            pages.trim(size);
+        }
+
+        @Override
+        void free() {
+            pages.free();
+        }
+    }
+
+    private final class DirectCharArray extends CharArray {
+        private final Pages pages;
+
+        DirectCharArray(int capacity) {
+            pages = new Pages(1, capacity);
+        }
+
+        DirectCharArray(Pages pages) {
+            this.pages = pages;
+        }
+
+        @Override
+        void set(long index, char[] buf, int start, int count) {
+            for (int i = 0; i < count; i++, index++) {
+                pages.page(index).putChar((int) (index & PAGE_MASK) << 1, buf[start + i]);
+            }
+        }
+
+        @Override
+        void set(long index, String value) {
+            for (int i = 0; i < value.length(); i++, index++) {
+                pages.page(index).putChar((int) (index & PAGE_MASK) << 1, value.charAt(i));
+            }
+        }
+
+        @Override
+        String string(long start, int count) {
+            char[] chars = new char[count];
+            for (int i = 0; i < count; i++, start++) {
+                chars[i] = pages.page(start).getChar((int) (start & PAGE_MASK) << 1);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        void ensure(long capacity) {
+            pages.ensure(capacity);
+        }
+
+        @Override
+        void trim(long size) {
+            pages.trim(size);
+        }
+
+        @Override
+        void free() {
+            pages.free();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+// by Luminaw
+// Selects the columns a parser should materialize, by position or by header name.
+
+import java.util.Arrays;
+
+/**
+ * A set of columns to read from each record, in the order they should appear in the
+ * parsed rows. Columns that are not selected are still scanned to find the next
+ * delimiter, but their contents are never copied or decoded.
+ * <p>
+ * Projections by name are resolved against the first row of the file, which is then
+ * returned projected like any other row. A selected column that is missing from a
+ * short row is returned as an empty string, so every row has the same width.
+ */
+public final class ColumnProjection {
+    private final int[] indices;
+    private final String[] names;
+
+    private ColumnProjection(int[] indices, String[] names) {
+        this.indices = indices;
+        this.names = names;
+    }
+
+    /**
+     * Creates a projection of columns by zero-based position.
+     * @param indices The columns to read, in output order
+     * @return The projection
+     * @throws IllegalArgumentException If no columns are given, or an index is negative or repeated
+     */
+    public static ColumnProjection indices(int... indices) {
+        if (indices == null || indices.length == 0) {
+            throw new IllegalArgumentException("At least one column must be selected");
+        }
+        int[] copy = indices.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] < 0) {
+                throw new IllegalArgumentException("Column index cannot be negative: " + copy[i]);
+            }
+            for (int j = 0; j < i; j++) {
+                if (copy[j] == copy[i]) {
+                    throw new IllegalArgumentException("Column selected more than once: " + copy[i]);
+                }
+            }
+        }
+        return new ColumnProjection(copy, null);
+    }
+
+    /**
+     * Creates a projection of columns by header name.
+     * @param names The column names as they appear in the first row, in output order
+     * @return The projection
+     * @throws IllegalArgumentException If no names are given, or a name is null or repeated
+     */
+    public static ColumnProjection names(String... names) {
+        if (names == null || names.length == 0) {
+            throw new IllegalArgumentException("At least one column must be selected");
+        }
+        String[] copy = names.clone();
+        for (int i = 0; i < copy.length; i++) {
+            if (copy[i] == null) {
+                throw new IllegalArgumentException("Column name cannot be null");
+            }
+            for (int j = 0; j < i; j++) {
+                if (copy[j].equals(copy[i])) {
+                    throw new IllegalArgumentException("Column selected more than once: " + copy[i]);
+                }
+            }
+        }
+        return new ColumnProjection(null, copy);
+    }
+
+    /**
+     * Checks if the projection selects columns by name and needs the header to be resolved.
+     * @return True for a projection by name
+     */
+    public boolean isByName() {
+        return names != null;
+    }
+
+    /**
+     * Returns the number of selected columns, which is the width of every projected row.
+     * @return The column count
+     */
+    public int size() {
+        return names != null ? names.length : indices.length;
+    }
+
+    /**
+     * Returns the selected column positions of a projection by index.
+     * @return The positions in output order, or null for a projection by name
+     */
+    int[] positions() {
+        return indices;
+    }
+
+    /**
+     * Resolves the projection to column positions.
+     * @param header The first row of the file; only used for a projection by name
+     * @return The selected column positions, in output order
+     * @throws CSVParser.CSVParserException If a named column is not in the header
+     */
+    int[] resolve(String[] header) throws CSVParser.CSVParserException {
+        if (names == null) {
+            return indices;
+        }
+        int[] resolved = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            resolved[i] = -1;
+            for (int column = 0; column < header.length; column++) {
+                if (header[column].equals(names[i])) {
+                    resolved[i] = column;
+                    break;
+                }
+            }
+            if (resolved[i] < 0) {
+                throw new CSVParser.CSVParserException("Column not found in header: " + names[i]);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Projects an already parsed row.
+     * @param row The full row
+     * @param columns Resolved column positions
+     * @return The selected fields, with missing columns as empty strings
+     */
+    static String[] apply(String[] row, int[] columns) {
+        String[] result = new String[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            result[i] = columns[i] < row.length ? row[columns[i]] : "";
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return names != null ? "names" + Arrays.toString(names) : "indices" + Arrays.toString(indices);
+    }
+}
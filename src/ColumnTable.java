@@ -0,0 +1,161 @@
+// by Luminaw
+// A parsed CSV file held column by column instead of row by row.
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An in-memory table built by {@link CSVParser#parseColumns(String)}. Each column is a
+ * {@link Column} whose type is chosen from its values: a column starts as INT and is
+ * widened to LONG, DOUBLE or STRING when a value does not fit. Integers with a plus sign
+ * or leading zeros, such as "+1" or "007", are treated as text so they are not changed.
+ * Text columns with few distinct values are dictionary-encoded, as set by
+ * {@link CSVParser#setDictionaryEncoding(DictionaryEncoding)}.
+ * A detected header row supplies the column names and is not stored as data.
+ */
+public final class ColumnTable implements AutoCloseable {
+    /**
+     * Where the values of a table's columns are kept.
+     */
+    public enum Storage {
+        /** Java arrays on the heap; the default. */
+        HEAP,
+        /**
+         * Direct memory outside the Java heap, released by {@link ColumnTable#close()}.
+         * The garbage collector does not scan or copy it, which keeps pauses short for
+         * tables of many gigabytes. The JVM limits direct memory with
+         * {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size.
+         */
+        OFF_HEAP
+    }
+
+    private final String[] names;
+    private final Column[] columns;
+    private final int rowCount;
+    private final Storage storage;
+    private final ColumnMemory memory;
+
+    ColumnTable(String[] names, Column[] columns, int rowCount, Storage storage, ColumnMemory memory) {
+        this.names = names;
+        this.columns = columns;
+        this.rowCount = rowCount;
+        this.storage = storage;
+        this.memory = memory;
+    }
+
+    /**
+     * Returns where the column values are kept.
+     * @return The storage
+     */
+    public Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Returns the number of data rows.
+     * @return The row count
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the number of columns, which is the width of the widest row.
+     * @return The column count
+     */
+    public int getColumnCount() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the name of a column from the header row.
+     * @param column Zero-based column index
+     * @return The name, or null if the file has no header or the header is shorter
+     */
+    public String getColumnName(int column) {
+        checkColumn(column);
+        return names != null && column < names.length ? names[column] : null;
+    }
+
+    /**
+     * Finds a column by its header name.
+     * @param name The column name
+     * @return The zero-based column index, or -1 if there is no such column
+     */
+    public int indexOf(String name) {
+        return names == null ? -1 : Arrays.asList(names).indexOf(name);
+    }
+
+    /**
+     * Returns a column.
+     * @param column Zero-based column index
+     * @return The column
+     */
+    public Column getColumn(int column) {
+        checkColumn(column);
+        return columns[column];
+    }
+
+    /**
+     * Returns a column by its header name.
+     * @param name The column name
+     * @return The column
+     * @throws IllegalArgumentException If there is no column with that name
+     */
+    public Column getColumn(String name) {
+        int column = indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException("Column not found: " + name);
+        }
+        return columns[column];
+    }
+
+    /**
+     * Converts the table back to rows, for example to pass to {@link CSVParser#writeCSV(List, String)}.
+     * The header row is included first when the table has column names.
+     * @return The rows as arrays of strings
+     */
+    public List<String[]> toRows() {
+        List<String[]> rows = new ArrayList<>(rowCount + 1);
+        if (names != null) {
+            String[] header = new String[columns.length];
+            for (int c = 0; c < header.length; c++) {
+                String name = getColumnName(c);
+                header[c] = name != null ? name : "";
+            }
+            rows.add(header);
+        }
+        for (int r = 0; r < rowCount; r++) {
+            String[] row = new String[columns.length];
+            for (int c = 0; c < row.length; c++) {
+                row[c] = columns[c].getString(r);
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Releases the column values. For {@link Storage#OFF_HEAP} the direct memory is freed
+     * right away and reading a value afterwards throws IllegalStateException; the table
+     * must not be closed while another thread reads it. For {@link Storage#HEAP} this does
+     * nothing and the values are reclaimed by the garbage collector as usual.
+     */
+    @Override
+    public void close() {
+        if (storage == Storage.OFF_HEAP) {
+            memory.close();
+        }
+    }
+
+    String[] columnNames() {
+        return names;
+    }
+
+    private void checkColumn(int column) {
+        if (column < 0 || column >= columns.length) {
+            throw new IndexOutOfBoundsException("Column " + column + " out of range for table with " + columns.length + " columns");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// by Luminaw
+// Appends parsed rows to the columns of a ColumnTable.
+
+import java.util.Arrays;
+
+/**
+ * Collects rows into {@link Column}s. Field values are decoded straight from the row's
+ * char buffer, so no String is created for numeric fields. Columns that first appear in
+ * a later, wider row are filled with nulls for the rows before it.
+ */
+final class ColumnTableBuilder {
+    private final DictionaryEncoding encoding;
+    private final ColumnTable.Storage storage;
+    private final ColumnMemory memory;
+    private Column[] columns = new Column[0];
+    private String[] names;
+    private int rowCount;
+
+    ColumnTableBuilder(DictionaryEncoding encoding, ColumnTable.Storage storage) {
+        this.encoding = encoding;
+        this.storage = storage;
+        this.memory = storage == ColumnTable.Storage.OFF_HEAP ? ColumnMemory.direct() : ColumnMemory.HEAP;
+    }
+
+    /**
+     * Adds one parsed row; a header row sets the column names instead.
+     * @param row The row to add
+     * @throws CSVParser.CSVParserException If the table would pass {@link Column#MAX_VALUES}
+     *                                      rows, or a text column on the heap that many chars
+     */
+    void add(CSVRow row) throws CSVParser.CSVParserException {
+        if (row.isHeader()) {
+            names = row.toArray();
+            return;
+        }
+        if (rowCount == Column.MAX_VALUES) {
+            throw new CSVParser.CSVParserException("Too many rows for a column table; the limit is "
+                    + Column.MAX_VALUES);
+        }
+        try {
+            append(row);
+        } catch (Column.CapacityException e) {
+            throw new CSVParser.CSVParserException("Column too large for " + storage + " storage: "
+                    + e.getMessage(), e);
+        }
+        rowCount++;
+    }
+
+    private void append(CSVRow row) {
+        int width = row.size();
+        if (width > columns.length) {
+            int old = columns.length;
+            columns = Arrays.copyOf(columns, width);
+            for (int c = old; c < width; c++) {
+                boolean chosen = encoding.isChosen(c, names);
+                columns[c] = Column.create(memory, chosen ? Integer.MAX_VALUE : encoding.autoLimit(), chosen);
+                for (int r = 0; r < rowCount; r++) {
+                    columns[c].appendNull();
+                }
+            }
+        }
+        char[] buf = row.buffer();
+        for (int c = 0; c < columns.length; c++) {
+            if (c >= width || row.start(c) == row.end(c)) {
+                columns[c].appendNull();
+            } else {
+                columns[c] = columns[c].append(buf, row.start(c), row.end(c));
+            }
+        }
+    }
+
+    /**
+     * Finishes the table and releases spare capacity.
+     * @return The table
+     */
+    ColumnTable build() {
+        for (Column column : columns) {
+            column.trim();
+        }
+        return new ColumnTable(names, columns, rowCount, storage, memory);
+    }
+
+    /**
+     * Releases the memory of a table that will not be built, for example after a parse error.
+     */
+    void discard() {
+        memory.close();
+    }
+}
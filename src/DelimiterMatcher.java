@@ -0,0 +1,105 @@
+// by Luminaw
+// Matches a field delimiter of one or more characters.
+
+/**
+ * Matches a delimiter such as "," or "||" or "~|~" in char, String and UTF-8 byte input.
+ * Tokenizers compare each character against {@link #first()} and only call a
+ * {@code matches} method on a hit, so single-character delimiters cost one comparison
+ * and longer ones only pay for the remaining characters where the first one appears.
+ */
+final class DelimiterMatcher {
+    private final char[] chars;
+    private final byte[] bytes;
+
+    /**
+     * Constructs a DelimiterMatcher.
+     * @param delimiter The delimiter; must not be empty
+     */
+    DelimiterMatcher(String delimiter) {
+        this.chars = delimiter.toCharArray();
+        this.bytes = new byte[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            bytes[i] = (byte) chars[i]; // Only used when every char is ASCII
+        }
+    }
+
+    /**
+     * Returns the first character of the delimiter.
+     * @return The first character
+     */
+    char first() {
+        return chars[0];
+    }
+
+    /**
+     * Returns the first character of the delimiter as a UTF-8 byte; only meaningful for ASCII delimiters.
+     * @return The first byte
+     */
+    byte firstByte() {
+        return bytes[0];
+    }
+
+    /**
+     * Returns the number of characters in the delimiter.
+     * @return The delimiter length
+     */
+    int length() {
+        return chars.length;
+    }
+
+    /**
+     * Checks for the delimiter at a position whose first character is already known to match.
+     * @param s The text to check
+     * @param index Position of the first delimiter character
+     * @return True if the whole delimiter is present
+     */
+    boolean matches(CharSequence s, int index) {
+        if (index + chars.length > s.length()) {
+            return false;
+        }
+        for (int i = 1; i < chars.length; i++) {
+            if (s.charAt(index + i) != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for the delimiter in a char buffer.
+     * @param buf The buffer to check
+     * @param index Position of the first delimiter character
+     * @param end End of the valid data in the buffer
+     * @return True if the whole delimiter is present before {@code end}
+     */
+    boolean matches(char[] buf, int index, int end) {
+        if (index + chars.length > end) {
+            return false;
+        }
+        for (int i = 1; i < chars.length; i++) {
+            if (buf[index + i] != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks for the delimiter in UTF-8 bytes.
+     * @param buf The buffer to check
+     * @param index Position of the first delimiter byte
+     * @param end End of the valid data in the buffer
+     * @return True if the whole delimiter is present before {@code end}
+     */
+    boolean matches(byte[] buf, int index, int end) {
+        if (index + bytes.length > end) {
+            return false;
+        }
+        for (int i = 1; i < bytes.length; i++) {
+            if (buf[index + i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
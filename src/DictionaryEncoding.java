@@ -0,0 +1,112 @@
+// by Luminaw
+// Chooses which text columns of a ColumnTable are stored as dictionary codes.
+
+import java.util.Arrays;
+
+/**
+ * Decides which columns {@link CSVParser#parseColumns(String)} dictionary-encodes.
+ * A dictionary-encoded column stores an int code per value and each distinct value once,
+ * which suits columns such as country codes, status flags or categories that repeat a
+ * small set of values. Chosen columns are always encoded and kept as text even if their
+ * values are numeric; with automatic detection, text columns are encoded until they turn
+ * out to have too many distinct values.
+ */
+public final class DictionaryEncoding {
+    private static final int DEFAULT_LIMIT = 1 << 16;
+    private static final DictionaryEncoding NONE = new DictionaryEncoding(0, null, null);
+
+    private final int limit;
+    private final int[] indices;
+    private final String[] names;
+
+    private DictionaryEncoding(int limit, int[] indices, String[] names) {
+        this.limit = limit;
+        this.indices = indices;
+        this.names = names;
+    }
+
+    /**
+     * Returns automatic detection with a limit of 65536 distinct values per column.
+     * This is the default.
+     * @return The encoding policy
+     */
+    public static DictionaryEncoding auto() {
+        return auto(DEFAULT_LIMIT);
+    }
+
+    /**
+     * Returns automatic detection: a text column is encoded while it has at most
+     * {@code maxDistinct} distinct values and no more distinct values than half its rows.
+     * @param maxDistinct The most distinct values a column may have
+     * @return The encoding policy
+     */
+    public static DictionaryEncoding auto(int maxDistinct) {
+        if (maxDistinct < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        return new DictionaryEncoding(maxDistinct, null, null);
+    }
+
+    /**
+     * Returns a policy that encodes exactly the given columns.
+     * @param indices Zero-based column indices
+     * @return The encoding policy
+     */
+    public static DictionaryEncoding indices(int... indices) {
+        return new DictionaryEncoding(0, indices.clone(), null);
+    }
+
+    /**
+     * Returns a policy that encodes exactly the columns with the given header names.
+     * @param names Column names as they appear in the header row
+     * @return The encoding policy
+     */
+    public static DictionaryEncoding names(String... names) {
+        return new DictionaryEncoding(0, null, names.clone());
+    }
+
+    /**
+     * Returns a policy that stores all text columns as plain text.
+     * @return The encoding policy
+     */
+    public static DictionaryEncoding none() {
+        return NONE;
+    }
+
+    /**
+     * Checks if a column is always encoded.
+     * @param column Zero-based column index
+     * @param header The header row, or null if there is none
+     * @return True if the column was chosen
+     */
+    boolean isChosen(int column, String[] header) {
+        if (indices != null) {
+            for (int index : indices) {
+                if (index == column) {
+                    return true;
+                }
+            }
+        }
+        return names != null && header != null && column < header.length
+                && Arrays.asList(names).contains(header[column]);
+    }
+
+    /**
+     * Returns the automatic detection limit.
+     * @return The most distinct values for automatic encoding, or 0 if detection is off
+     */
+    int autoLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        if (indices != null) {
+            return "indices" + Arrays.toString(indices);
+        }
+        if (names != null) {
+            return "names" + Arrays.toString(names);
+        }
+        return limit > 0 ? "auto(" + limit + ")" : "none";
+    }
+}
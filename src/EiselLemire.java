@@ -0,0 +1,144 @@
+// by Luminaw
+// Converts a decimal significand and exponent to the nearest double with 128-bit arithmetic.
+// Based on the algorithm by Daniel Lemire and Michael Eisel used in the fast_float library.
+
+import java.math.BigInteger;
+
+/**
+ * The Eisel-Lemire conversion of w * 10^q to a double. The significand is multiplied by a
+ * 128-bit approximation of 5^q, and the top bits of the product give the result. The
+ * rare products whose low bits are too close to a rounding boundary are reported as a
+ * failure, and the caller falls back to {@link Double#parseDouble(String)}.
+ */
+final class EiselLemire {
+    static final int SMALLEST_POWER_OF_TEN = -342;
+    static final int LARGEST_POWER_OF_TEN = 308;
+    /** Returned when the product is not precise enough to decide the rounding. */
+    static final long FAILED = -1;
+
+    private static final int MANTISSA_BITS = 52;
+    private static final int MINIMUM_EXPONENT = -1023;
+    private static final int INFINITE_POWER = 0x7FF;
+    private static final long PRECISION_MASK = -1L >>> (MANTISSA_BITS + 3);
+
+    /** High and low words of the truncated 128-bit significand of 5^q, from q = -342 to 308. */
+    private static final long[] POWERS_OF_FIVE = new long[2 * (LARGEST_POWER_OF_TEN - SMALLEST_POWER_OF_TEN + 1)];
+
+    static {
+        BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+        BigInteger mask = two128.subtract(BigInteger.ONE);
+        BigInteger five = BigInteger.valueOf(5);
+        for (int q = SMALLEST_POWER_OF_TEN; q <= LARGEST_POWER_OF_TEN; q++) {
+            BigInteger c;
+            if (q < 0) {
+                // Reciprocal of 5^-q, rounded up so the product never undershoots
+                BigInteger power = five.pow(-q);
+                int z = power.subtract(BigInteger.ONE).bitLength();
+                int b = q >= -27 ? z + 127 : 2 * z + 128;
+                c = BigInteger.ONE.shiftLeft(b).divide(power).add(BigInteger.ONE);
+                if (c.bitLength() > 128) {
+                    c = c.shiftRight(c.bitLength() - 128);
+                }
+            } else {
+                // Shift 5^q so that its highest bit is bit 127, truncating the rest
+                BigInteger power = five.pow(q);
+                c = power.bitLength() > 128 ? power.shiftRight(power.bitLength() - 128)
+                        : power.shiftLeft(128 - power.bitLength());
+            }
+            int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+            POWERS_OF_FIVE[index] = c.shiftRight(64).longValue();
+            POWERS_OF_FIVE[index + 1] = c.and(mask).longValue();
+        }
+    }
+
+    private EiselLemire() {
+    }
+
+    /**
+     * Computes the bits of the double nearest to w * 10^q, without the sign.
+     * @param w The decimal significand; must not be zero
+     * @param q The decimal exponent
+     * @return The IEEE 754 bits, or {@link #FAILED} if the caller must use a slower method
+     */
+    static long toBits(long w, int q) {
+        if (q < SMALLEST_POWER_OF_TEN) {
+            return 0;
+        }
+        if (q > LARGEST_POWER_OF_TEN) {
+            return (long) INFINITE_POWER << MANTISSA_BITS;
+        }
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        int index = 2 * (q - SMALLEST_POWER_OF_TEN);
+        long high = multiplyHigh(w, POWERS_OF_FIVE[index]);
+        long low = w * POWERS_OF_FIVE[index];
+        if ((high & PRECISION_MASK) == PRECISION_MASK) {
+            // The truncated bits matter; add in the product with the low word of 5^q
+            long secondHigh = multiplyHigh(w, POWERS_OF_FIVE[index + 1]);
+            low += secondHigh;
+            if (Long.compareUnsigned(secondHigh, low) > 0) {
+                high++;
+            }
+        }
+        if (low == -1L && (q < -27 || q > 55)) {
+            return FAILED; // Very rare; the product may be off by one in the last place
+        }
+
+        int upperBit = (int) (high >>> 63);
+        int shift = upperBit + 64 - MANTISSA_BITS - 3;
+        long mantissa = high >>> shift;
+        int power2 = power(q) + upperBit - lz - MINIMUM_EXPONENT;
+        if (power2 <= 0) {
+            // Subnormal result
+            if (-power2 + 1 >= 64) {
+                return 0;
+            }
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            power2 = mantissa < (1L << MANTISSA_BITS) ? 0 : 1;
+            return ((long) power2 << MANTISSA_BITS) | (mantissa & ((1L << MANTISSA_BITS) - 1));
+        }
+        // Exactly halfway between two doubles is only possible when 5^q fits in 64 bits;
+        // round to even there instead of up
+        if ((low == 0 || low == 1) && q >= -4 && q <= 23 && (mantissa & 3) == 1
+                && (mantissa << shift) == high) {
+            mantissa &= ~1L;
+        }
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << MANTISSA_BITS)) {
+            mantissa = 1L << MANTISSA_BITS;
+            power2++;
+        }
+        mantissa &= ~(1L << MANTISSA_BITS);
+        if (power2 >= INFINITE_POWER) {
+            return (long) INFINITE_POWER << MANTISSA_BITS;
+        }
+        return ((long) power2 << MANTISSA_BITS) | mantissa;
+    }
+
+    /**
+     * Returns floor(log2(10^q)) + 63, computed with a fixed-point approximation of log2(10).
+     */
+    private static int power(int q) {
+        return (((152170 + 65536) * q) >> 16) + 63;
+    }
+
+    /**
+     * Returns the high 64 bits of the unsigned 128-bit product of two longs.
+     */
+    private static long multiplyHigh(long x, long y) {
+        long x0 = x & 0xFFFFFFFFL;
+        long x1 = x >>> 32;
+        long y0 = y & 0xFFFFFFFFL;
+        long y1 = y >>> 32;
+        long p00 = x0 * y0;
+        long p01 = x0 * y1;
+        long p10 = x1 * y0;
+        long p11 = x1 * y1;
+        long middle = p10 + (p00 >>> 32) + (p01 & 0xFFFFFFFFL);
+        return p11 + (middle >>> 32) + (p01 >>> 32);
+    }
+}
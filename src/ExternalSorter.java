@@ -0,0 +1,417 @@
+// by Luminaw
+// Sorts a CSV file that may not fit in memory by spilling sorted runs to disk and merging them.
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * The sort used by {@link CSVParser#sort(String, String, SortOrder)}. Rows are read with a
+ * streaming reader and collected until their estimated size reaches the memory budget;
+ * the batch is then sorted and written to a temporary run file. The runs are merged with
+ * a priority queue, at most {@link #MAX_FAN_IN} at a time, so the number of open files
+ * stays bounded however large the input is. Numeric keys are decoded once when a row is
+ * read and stored in the runs next to the fields, so merging never parses them again.
+ * <p>
+ * Run files are created next to the output file, which has to hold the sorted rows anyway,
+ * and are always deleted before the sort returns.
+ */
+final class ExternalSorter {
+    /** Most runs merged in one pass. */
+    static final int MAX_FAN_IN = 64;
+
+    private static final int END_OF_RUN = -1;
+
+    private final CSVParser parser;
+    private final SortOrder order;
+    private final long memory;
+    private final Path directory;
+    private final List<Path> runs = new ArrayList<>();
+    private int[] columns;
+    private int[] numberSlots; // Slot of each key in Record.numbers, or -1 for a text key
+    private int numberCount;
+    private Comparator<Record> comparator;
+
+    /**
+     * Constructs a sorter for one sort.
+     * @param parser The parser that reads the input and formats the output
+     * @param order The sort keys
+     * @param memory Estimated bytes of rows to hold before spilling a run
+     * @param outputPath The file the sorted rows are written to
+     */
+    ExternalSorter(CSVParser parser, SortOrder order, long memory, String outputPath) {
+        this.parser = parser;
+        this.order = order;
+        this.memory = memory;
+        this.directory = Paths.get(outputPath).toAbsolutePath().getParent();
+    }
+
+    /**
+     * Sorts a file.
+     * @param filePath Path to the CSV file
+     * @param outputPath Path to the output file; may be the input file
+     * @return The number of rows written, including a header row
+     * @throws CSVParser.CSVParserException If the file cannot be read, a row fails validation,
+     *                                      or the runs or the output cannot be written
+     */
+    long sort(String filePath, String outputPath) throws CSVParser.CSVParserException {
+        try {
+            String[] header = null;
+            List<Record> batch = new ArrayList<>();
+            long used = 0;
+            long count = 0;
+            try (CSVParser.RowReader reader = parser.openMappedReader(filePath)) {
+                CSVRow row = new CSVRow();
+                while (reader.readRow(row)) {
+                    if (count++ == 0) {
+                        prepare(row.toArray());
+                        if (row.isHeader()) {
+                            header = row.toArray();
+                            continue;
+                        }
+                    }
+                    Record record = read(row);
+                    batch.add(record);
+                    used += record.estimateSize();
+                    if (used >= memory) {
+                        spill(batch);
+                        batch.clear();
+                        used = 0;
+                    }
+                }
+            }
+            if (count == 0) {
+                throw new CSVParser.CSVParserException("The file is empty or contains no valid data");
+            }
+
+            if (runs.isEmpty()) {
+                Collections.sort(batch, comparator); // Stable, so equal rows keep their order
+                try (CSVWriter out = new CSVWriter(outputPath, header)) {
+                    for (Record record : batch) {
+                        out.write(record);
+                    }
+                }
+                return count;
+            }
+            if (!batch.isEmpty()) {
+                spill(batch);
+            }
+            batch = null; // Let the last batch be collected before merging
+            while (runs.size() > MAX_FAN_IN) {
+                mergePass();
+            }
+            try (CSVWriter out = new CSVWriter(outputPath, header)) {
+                merge(runs, out);
+            }
+            return count;
+        } catch (IOException e) {
+            throw new CSVParser.CSVParserException("Error sorting file: " + e.getMessage(), e);
+        } finally {
+            for (Path run : runs) {
+                try {
+                    Files.deleteIfExists(run);
+                } catch (IOException e) {
+                    // Leave it for the temp directory cleanup
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the keys against the first row and builds the row comparator.
+     */
+    private void prepare(String[] first) throws CSVParser.CSVParserException {
+        columns = order.resolve(first);
+        numberSlots = new int[columns.length];
+        Comparator<Record> result = null;
+        for (int k = 0; k < columns.length; k++) {
+            final int column = columns[k];
+            final boolean descending = order.isDescending(k);
+            Comparator<Record> key;
+            if (order.type(k) == SortOrder.Type.NUMBER) {
+                final int slot = numberCount++;
+                numberSlots[k] = slot;
+                key = (a, b) -> compareNumbers(a.numbers[slot], b.numbers[slot], a.field(column), b.field(column),
+                        descending);
+            } else {
+                numberSlots[k] = -1;
+                final Comparator<? super String> text = order.comparator(k);
+                key = (a, b) -> text.compare(a.field(column), b.field(column));
+                if (descending) {
+                    key = key.reversed();
+                }
+            }
+            result = result == null ? key : result.thenComparing(key);
+        }
+        comparator = result;
+    }
+
+    /**
+     * Compares the values of a numeric key. Only the order of the numbers follows the key's
+     * direction; values that are not numbers always come last, in ascending text order.
+     */
+    private static int compareNumbers(double a, double b, String aText, String bText, boolean descending) {
+        boolean aNumber = a == a;
+        boolean bNumber = b == b;
+        if (aNumber && bNumber) {
+            return descending ? Double.compare(b, a) : Double.compare(a, b);
+        }
+        if (aNumber != bNumber) {
+            return aNumber ? -1 : 1;
+        }
+        return aText.compareTo(bText);
+    }
+
+    /**
+     * Copies a row and decodes its numeric keys.
+     */
+    private Record read(CSVRow row) {
+        double[] numbers = numberCount > 0 ? new double[numberCount] : null;
+        for (int k = 0; k < columns.length; k++) {
+            int slot = numberSlots[k];
+            if (slot >= 0) {
+                int column = columns[k];
+                numbers[slot] = column < row.size()
+                        ? FieldDecoder.tryParseDouble(row.buffer(), row.start(column), row.end(column))
+                        : Double.NaN;
+            }
+        }
+        return new Record(row.toArray(), numbers);
+    }
+
+    /**
+     * Sorts a batch of rows and writes it to a new run.
+     */
+    private void spill(List<Record> batch) throws IOException {
+        Collections.sort(batch, comparator);
+        try (RunWriter out = new RunWriter(newRun())) {
+            for (Record record : batch) {
+                out.write(record);
+            }
+        }
+    }
+
+    /**
+     * Merges consecutive groups of runs into longer runs, keeping them in input order
+     * so that equal rows stay in file order.
+     */
+    private void mergePass() throws IOException {
+        List<Path> inputs = new ArrayList<>(runs);
+        for (int start = 0; start < inputs.size(); start += MAX_FAN_IN) {
+            List<Path> group = inputs.subList(start, Math.min(inputs.size(), start + MAX_FAN_IN));
+            try (RunWriter out = new RunWriter(newRun())) {
+                merge(group, out);
+            }
+            for (Path run : group) {
+                Files.deleteIfExists(run);
+            }
+        }
+        runs.removeAll(inputs);
+    }
+
+    private Path newRun() throws IOException {
+        Path run = Files.createTempFile(directory, "csvsort", ".run");
+        runs.add(run);
+        return run;
+    }
+
+    /**
+     * Merges sorted runs into a sink. Rows that compare equal are taken from the earlier run.
+     */
+    private void merge(List<Path> inputs, RecordSink out) throws IOException {
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(inputs.size(), (a, b) -> {
+            int c = comparator.compare(a.current, b.current);
+            return c != 0 ? c : Integer.compare(a.index, b.index);
+        });
+        List<RunReader> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < inputs.size(); i++) {
+                RunReader reader = new RunReader(inputs.get(i), i, numberCount);
+                readers.add(reader);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+            RunReader reader;
+            while ((reader = queue.poll()) != null) {
+                out.write(reader.current);
+                if (reader.advance()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RunReader r : readers) {
+                r.close();
+            }
+        }
+    }
+
+    /**
+     * A row being sorted, with the decoded values of its numeric keys.
+     */
+    private static final class Record {
+        final String[] fields;
+        final double[] numbers;
+
+        Record(String[] fields, double[] numbers) {
+            this.fields = fields;
+            this.numbers = numbers;
+        }
+
+        String field(int column) {
+            return column < fields.length ? fields[column] : "";
+        }
+
+        /**
+         * Estimates the heap taken by the record and its list slot.
+         */
+        long estimateSize() {
+            long size = 48 + 4L * fields.length;
+            for (String field : fields) {
+                size += 40 + 2L * field.length();
+            }
+            if (numbers != null) {
+                size += 16 + 8L * numbers.length;
+            }
+            return size;
+        }
+    }
+
+    private interface RecordSink extends Closeable {
+        void write(Record record) throws IOException;
+    }
+
+    /**
+     * Writes records to a run: the field count, each field as a UTF-8 byte count and
+     * bytes, then the numeric keys; a field count of -1 ends the run.
+     */
+    private static final class RunWriter implements RecordSink {
+        private final DataOutputStream out;
+
+        RunWriter(Path run) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), 1 << 16));
+        }
+
+        @Override
+        public void write(Record record) throws IOException {
+            out.writeInt(record.fields.length);
+            for (String field : record.fields) {
+                byte[] bytes = field.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            if (record.numbers != null) {
+                for (double number : record.numbers) {
+                    out.writeDouble(number);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.writeInt(END_OF_RUN);
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the records of a run back in order.
+     */
+    private static final class RunReader implements Closeable {
+        final int index;
+        private final int numberCount;
+        private final DataInputStream in;
+        private byte[] bytes = new byte[64];
+        Record current;
+
+        RunReader(Path run, int index, int numberCount) throws IOException {
+            this.index = index;
+            this.numberCount = numberCount;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), 1 << 16));
+        }
+
+        /**
+         * Reads the next record into {@link #current}.
+         * @return False at the end of the run
+         */
+        boolean advance() throws IOException {
+            int fieldCount = in.readInt();
+            if (fieldCount == END_OF_RUN) {
+                current = null;
+                return false;
+            }
+            if (fieldCount < 0) {
+                throw new EOFException("Corrupt sort run");
+            }
+            String[] fields = new String[fieldCount];
+            for (int i = 0; i < fieldCount; i++) {
+                int length = in.readInt();
+                if (length > bytes.length) {
+                    bytes = new byte[Math.max(length, bytes.length * 2)];
+                }
+                in.readFully(bytes, 0, length);
+                fields[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            double[] numbers = null;
+            if (numberCount > 0) {
+                numbers = new double[numberCount];
+                for (int i = 0; i < numberCount; i++) {
+                    numbers[i] = in.readDouble();
+                }
+            }
+            current = new Record(fields, numbers);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes records as CSV in the format of {@link CSVParser#writeCSV(List, String)},
+     * starting with the header row if there is one.
+     */
+    private final class CSVWriter implements RecordSink {
+        private final BufferedWriter out;
+
+        CSVWriter(String outputPath, String[] header) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(outputPath)),
+                    StandardCharsets.UTF_8), 1 << 16);
+            if (header != null) {
+                try {
+                    parser.writeRow(out, header);
+                } catch (IOException e) {
+                    out.close();
+                    throw e;
+                }
+            }
+        }
+
+        @Override
+        public void write(Record record) throws IOException {
+            parser.writeRow(out, record.fields);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+// by Luminaw
+// Decodes numbers and booleans directly from a range of a char buffer.
+
+/**
+ * Typed decoding of field values for {@link CSVRow}. Values are read from the row's char
+ * buffer without creating a String first. The accepted syntax is stricter than the JDK
+ * parsers: no hexadecimal, no type suffixes such as "1d", and no surrounding whitespace
+ * (fields are already trimmed).
+ */
+final class FieldDecoder {
+    /** Largest integer up to which every long converts to a double exactly. */
+    private static final long MAX_EXACT = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private FieldDecoder() {
+    }
+
+    /**
+     * Parses a decimal integer with an optional sign.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return The value
+     * @throws NumberFormatException If the range is not an integer or does not fit in a long
+     */
+    static long parseLong(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i == end) {
+            throw invalid("long", buf, start, end);
+        }
+        // Accumulate negatively so that Long.MIN_VALUE can be represented
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalid("long", buf, start, end);
+            }
+            if (result < (limit + digit) / 10) {
+                throw new NumberFormatException("Value out of range for long: \"" + text(buf, start, end) + "\"");
+            }
+            result = result * 10 - digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Checks if a range is an integer written the way {@link Long#toString(long)} writes
+     * it: an optional minus sign and at most 19 digits, without a plus sign or leading zeros.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return True if the range is a canonical integer; it may still overflow a long
+     */
+    static boolean isCanonicalInteger(char[] buf, int start, int end) {
+        int i = start;
+        if (i < end && buf[i] == '-') {
+            i++;
+        }
+        int digits = end - i;
+        if (digits == 0 || digits > 19 || (buf[i] == '0' && (digits > 1 || i > start))) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (buf[i] < '0' || buf[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal integer that must fit in an int.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return The value
+     * @throws NumberFormatException If the range is not an integer or does not fit in an int
+     */
+    static int parseInt(char[] buf, int start, int end) {
+        long value = parseLong(buf, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("Value out of range for int: \"" + text(buf, start, end) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a decimal floating-point number such as "12", "-0.5" or "6.02e23", or one of
+     * "NaN", "Infinity" and "-Infinity".
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return The value, correctly rounded
+     * @throws NumberFormatException If the range is not a decimal number
+     */
+    static double parseDouble(char[] buf, int start, int end) {
+        double value = tryParseDouble(buf, start, end);
+        if (value != value && !isNaN(buf, start, end)) {
+            throw invalid("double", buf, start, end);
+        }
+        return value;
+    }
+
+    /**
+     * Parses a decimal floating-point number, returning NaN instead of throwing for
+     * malformed input. Short numbers are converted exactly with one multiplication or
+     * division. Longer ones use {@link EiselLemire}, and the few cases it cannot decide
+     * go through {@link Double#parseDouble(String)}. The result is always correctly rounded.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return The value, or NaN if the range is not a decimal number
+     */
+    static double tryParseDouble(char[] buf, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i < end && (buf[i] == 'N' || buf[i] == 'I')) {
+            return parseSpecial(buf, i, end, negative);
+        }
+        long mantissa = 0;
+        int digits = 0; // Significant digits kept in the mantissa
+        int exponent = 0;
+        boolean truncated = false; // A nonzero digit did not fit in the mantissa
+        boolean any = false;
+        for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+            any = true;
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (buf[i] - '0');
+                if (mantissa != 0) digits++;
+            } else {
+                truncated |= buf[i] != '0';
+                exponent++;
+            }
+        }
+        if (i < end && buf[i] == '.') {
+            for (i++; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                any = true;
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (buf[i] - '0');
+                    if (mantissa != 0) digits++;
+                    exponent--;
+                } else {
+                    truncated |= buf[i] != '0';
+                }
+            }
+        }
+        if (!any) {
+            return Double.NaN;
+        }
+        if (i < end && (buf[i] == 'e' || buf[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+                negativeExponent = buf[i] == '-';
+                i++;
+            }
+            if (i == end) {
+                return Double.NaN;
+            }
+            int e = 0;
+            for (; i < end && buf[i] >= '0' && buf[i] <= '9'; i++) {
+                if (e < 100000) e = e * 10 + (buf[i] - '0'); // Saturate; the result is 0 or infinity anyway
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        if (mantissa == 0) {
+            return negative ? -0.0 : 0.0;
+        }
+        if (!truncated && mantissa <= MAX_EXACT && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact doubles, so one IEEE operation rounds correctly
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            return negative ? -value : value;
+        }
+        long bits = EiselLemire.toBits(mantissa, exponent);
+        if (truncated && bits != EiselLemire.FAILED && EiselLemire.toBits(mantissa + 1, exponent) != bits) {
+            // The dropped digits lie between two doubles; only the full digits can decide
+            bits = EiselLemire.FAILED;
+        }
+        if (bits == EiselLemire.FAILED) {
+            return Double.parseDouble(text(buf, start, end));
+        }
+        return Double.longBitsToDouble(negative ? bits | Long.MIN_VALUE : bits);
+    }
+
+    /**
+     * Parses "true" or "false", ignoring case.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return The value
+     * @throws IllegalArgumentException If the range is neither "true" nor "false"
+     */
+    static boolean parseBoolean(char[] buf, int start, int end) {
+        if (matches(buf, start, end, "true", true)) {
+            return true;
+        }
+        if (matches(buf, start, end, "false", true)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Not a valid boolean: \"" + text(buf, start, end) + "\"");
+    }
+
+    private static double parseSpecial(char[] buf, int i, int end, boolean negative) {
+        if (matches(buf, i, end, "Infinity", false)) {
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        return Double.NaN; // Either "NaN" or malformed; parseDouble tells them apart
+    }
+
+    private static boolean isNaN(char[] buf, int start, int end) {
+        // Like the JDK, a sign is allowed before NaN and has no effect
+        if (start < end && (buf[start] == '-' || buf[start] == '+')) {
+            start++;
+        }
+        return matches(buf, start, end, "NaN", false);
+    }
+
+    private static boolean matches(char[] buf, int start, int end, String word, boolean ignoreCase) {
+        if (end - start != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = buf[start + i];
+            char w = word.charAt(i);
+            if (c != w && !(ignoreCase && Character.toLowerCase(c) == w)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static NumberFormatException invalid(String type, char[] buf, int start, int end) {
+        return new NumberFormatException("Not a valid " + type + ": \"" + text(buf, start, end) + "\"");
+    }
+
+    private static String text(char[] buf, int start, int end) {
+        return new String(buf, start, end - start);
+    }
+}
@@ -0,0 +1,102 @@
+// by Luminaw
+// A condition on a single field, checked by the parser while it tokenizes a record.
+
+/**
+ * A condition on the value of one field. Predicates are registered with a {@link RowFilter}
+ * and tested on the field's characters in the parser's buffer, before the row is turned
+ * into Strings; rows that fail are skipped without being materialized.
+ */
+public interface FieldPredicate {
+    /**
+     * Tests a trimmed field value. The value may be a view of the parser's buffer and is
+     * only valid during the call.
+     * @param value The field value; empty for a column missing from a short row
+     * @return True if the row may be kept
+     */
+    boolean test(CharSequence value);
+
+    /**
+     * Returns a predicate that holds when both this one and another hold. Numeric ranges
+     * are intersected, and every part is still tested on the parser's buffer.
+     * @param other The other predicate
+     * @return The combined predicate
+     */
+    default FieldPredicate and(FieldPredicate other) {
+        return AndPredicate.of(this, other);
+    }
+
+    /**
+     * Returns a predicate that matches one exact value.
+     * @param expected The value to match
+     * @return The predicate
+     */
+    static FieldPredicate equalTo(String expected) {
+        return value -> {
+            int length = expected.length();
+            if (value.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (value.charAt(i) != expected.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Returns a predicate that matches any non-empty value.
+     * @return The predicate
+     */
+    static FieldPredicate notEmpty() {
+        return value -> value.length() > 0;
+    }
+
+    /**
+     * Returns a predicate that matches numbers greater than a bound. Values that are
+     * not numbers never match.
+     * @param bound The exclusive lower bound
+     * @return The predicate
+     */
+    static FieldPredicate greaterThan(double bound) {
+        return new NumericPredicate(bound, false, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * Returns a predicate that matches numbers greater than or equal to a bound.
+     * @param bound The inclusive lower bound
+     * @return The predicate
+     */
+    static FieldPredicate atLeast(double bound) {
+        return new NumericPredicate(bound, true, Double.POSITIVE_INFINITY, true);
+    }
+
+    /**
+     * Returns a predicate that matches numbers less than a bound.
+     * @param bound The exclusive upper bound
+     * @return The predicate
+     */
+    static FieldPredicate lessThan(double bound) {
+        return new NumericPredicate(Double.NEGATIVE_INFINITY, true, bound, false);
+    }
+
+    /**
+     * Returns a predicate that matches numbers less than or equal to a bound.
+     * @param bound The inclusive upper bound
+     * @return The predicate
+     */
+    static FieldPredicate atMost(double bound) {
+        return new NumericPredicate(Double.NEGATIVE_INFINITY, true, bound, true);
+    }
+
+    /**
+     * Returns a predicate that matches numbers in a closed range.
+     * @param min The inclusive lower bound
+     * @param max The inclusive upper bound
+     * @return The predicate
+     */
+    static FieldPredicate between(double min, double max) {
+        return new NumericPredicate(min, true, max, true);
+    }
+}
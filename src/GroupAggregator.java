@@ -0,0 +1,361 @@
+// by Luminaw
+// Streams the rows of a CSV file into per-group counts, sums, minimums, maximums and averages.
+
+import java.util.Arrays;
+
+/**
+ * The engine behind {@link CSVParser#aggregate(String, Aggregation)}. Rows are read one at
+ * a time into a reused {@link CSVRow}, and nothing is kept per row: key fields are hashed
+ * and compared straight from the row's char buffer, and values are decoded from it with
+ * {@link FieldDecoder}, so a row whose group already exists creates no objects at all.
+ * <p>
+ * Groups live in an open-addressing table of group numbers. The chars of every group's
+ * key are stored back to back in one array, and each aggregate keeps its state in
+ * primitive arrays indexed by group number. Integer values are summed and compared as
+ * longs while every value of the column is an integer, and as doubles from then on.
+ */
+final class GroupAggregator {
+    private final CSVParser parser;
+    private final Aggregation aggregation;
+    private int[] keyColumns;
+    private int[] valueColumns;
+    private State[] states;
+    private String[] header;
+
+    private int groupCount;
+    private long[] hashes = new long[16]; // Key hash of each group
+    private int[] slots = new int[32]; // Group number + 1 per slot; 0 marks an empty slot
+    private char[] keyChars = new char[256];
+    private int keyLength;
+    private int[] keyEnds = new int[16]; // End of each key field in keyChars, by group * keys + field
+
+    GroupAggregator(CSVParser parser, Aggregation aggregation) {
+        this.parser = parser;
+        this.aggregation = aggregation;
+    }
+
+    /**
+     * Aggregates a file.
+     * @param filePath Path to the CSV file
+     * @return One row per group, in the order the groups first appear
+     * @throws CSVParser.CSVParserException If the file cannot be read, a row fails validation,
+     *                                      a named column is not in the header, or there are
+     *                                      more than {@link Column#MAX_VALUES} groups
+     */
+    ColumnTable aggregate(String filePath) throws CSVParser.CSVParserException {
+        long count = 0;
+        try (CSVParser.RowReader reader = parser.openMappedReader(filePath)) {
+            CSVRow row = new CSVRow();
+            while (reader.readRow(row)) {
+                if (count++ == 0) {
+                    prepare(row.toArray());
+                    if (row.isHeader()) {
+                        header = row.toArray();
+                        continue;
+                    }
+                }
+                add(row);
+            }
+        } catch (Column.CapacityException e) {
+            throw new CSVParser.CSVParserException("Too many groups: " + e.getMessage(), e);
+        }
+        if (count == 0) {
+            throw new CSVParser.CSVParserException("The file is empty or contains no valid data");
+        }
+        if (keyColumns.length == 0 && groupCount == 0) {
+            groupCount = 1; // Totals of a file with only a header: one empty group
+        }
+        return build();
+    }
+
+    private void prepare(String[] first) throws CSVParser.CSVParserException {
+        keyColumns = aggregation.resolveKeys(first);
+        valueColumns = aggregation.resolveValues(first);
+        states = new State[aggregation.size()];
+        for (int a = 0; a < states.length; a++) {
+            states[a] = new State(aggregation.function(a));
+        }
+        keyEnds = new int[Math.max(1, 16 * keyColumns.length)];
+    }
+
+    /**
+     * Finds or creates the group of a row and adds the row's values to it.
+     */
+    private void add(CSVRow row) {
+        int group = findGroup(row);
+        char[] buf = row.buffer();
+        for (int a = 0; a < states.length; a++) {
+            State state = states[a];
+            int column = valueColumns[a];
+            if (column < 0) {
+                state.counts[group]++;
+            } else if (column < row.size() && row.start(column) < row.end(column)) {
+                state.add(group, buf, row.start(column), row.end(column));
+            }
+        }
+    }
+
+    private int findGroup(CSVRow row) {
+        char[] buf = row.buffer();
+        int width = row.size();
+        long h = 0xcbf29ce484222325L;
+        for (int column : keyColumns) {
+            if (column < width) {
+                for (int i = row.start(column); i < row.end(column); i++) {
+                    h = (h ^ buf[i]) * 0x100000001b3L;
+                }
+            }
+            h = (h ^ 0xFFFF) * 0x100000001b3L; // Field separator, not a valid char on its own
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+
+        int mask = slots.length - 1;
+        int slot = (int) h & mask;
+        for (int stored; (stored = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            int group = stored - 1;
+            if (hashes[group] == h && keyEquals(group, row)) {
+                return group;
+            }
+        }
+        return addGroup(row, h, slot);
+    }
+
+    private boolean keyEquals(int group, CSVRow row) {
+        char[] buf = row.buffer();
+        int width = row.size();
+        int keys = keyColumns.length;
+        int at = group * keys;
+        int start = at == 0 ? 0 : keyEnds[at - 1];
+        for (int k = 0; k < keys; k++) {
+            int end = keyEnds[at + k];
+            int column = keyColumns[k];
+            int fieldStart = column < width ? row.start(column) : 0;
+            int fieldEnd = column < width ? row.end(column) : 0;
+            if (end - start != fieldEnd - fieldStart) {
+                return false;
+            }
+            for (int i = start, j = fieldStart; i < end; i++, j++) {
+                if (keyChars[i] != buf[j]) {
+                    return false;
+                }
+            }
+            start = end;
+        }
+        return true;
+    }
+
+    private int addGroup(CSVRow row, long h, int slot) {
+        int group = groupCount++;
+        if (group == hashes.length) {
+            int capacity = Column.capacity(hashes.length, group + 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            for (State state : states) {
+                state.grow(capacity);
+            }
+        }
+        hashes[group] = h;
+        slots[slot] = group + 1;
+
+        char[] buf = row.buffer();
+        int width = row.size();
+        int keys = keyColumns.length;
+        if ((group + 1L) * keys > keyEnds.length) {
+            keyEnds = Arrays.copyOf(keyEnds, Column.capacity(keyEnds.length, (group + 1L) * keys));
+        }
+        for (int k = 0; k < keys; k++) {
+            int column = keyColumns[k];
+            if (column < width) {
+                int length = row.end(column) - row.start(column);
+                if ((long) keyLength + length > keyChars.length) {
+                    keyChars = Arrays.copyOf(keyChars, Column.capacity(keyChars.length, (long) keyLength + length));
+                }
+                System.arraycopy(buf, row.start(column), keyChars, keyLength, length);
+                keyLength += length;
+            }
+            keyEnds[group * keys + k] = keyLength;
+        }
+
+        if (groupCount * 4L > slots.length * 3L) { // Load factor at most 0.75
+            rehash();
+        }
+        return group;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int group = 0; group < groupCount; group++) {
+            int slot = (int) hashes[group] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+
+    /**
+     * Copies the groups into a table: the key columns, typed like the columns of
+     * {@link CSVParser#parseColumns(String)}, then one column per aggregate.
+     */
+    private ColumnTable build() {
+        ColumnTable.Storage storage = parser.getColumnStorage();
+        ColumnMemory memory = storage == ColumnTable.Storage.OFF_HEAP ? ColumnMemory.direct() : ColumnMemory.HEAP;
+        boolean built = false;
+        try {
+            int keys = keyColumns.length;
+            String[] names = new String[keys + states.length];
+            for (int k = 0; k < keys; k++) {
+                int column = keyColumns[k];
+                names[k] = header != null && column < header.length ? header[column] : Integer.toString(column);
+            }
+            for (int a = 0; a < states.length; a++) {
+                names[keys + a] = aggregation.label(a, header, valueColumns[a]);
+            }
+
+            Column[] columns = new Column[names.length];
+            DictionaryEncoding encoding = parser.getDictionaryEncoding();
+            for (int k = 0; k < keys; k++) {
+                boolean chosen = encoding.isChosen(k, names);
+                Column column = Column.create(memory, chosen ? Integer.MAX_VALUE : encoding.autoLimit(), chosen);
+                for (int group = 0; group < groupCount; group++) {
+                    int at = group * keys + k;
+                    int start = at == 0 ? 0 : keyEnds[at - 1];
+                    if (start == keyEnds[at]) {
+                        column.appendNull();
+                    } else {
+                        column = column.append(keyChars, start, keyEnds[at]);
+                    }
+                }
+                column.trim();
+                columns[k] = column;
+            }
+            for (int a = 0; a < states.length; a++) {
+                columns[keys + a] = states[a].toColumn(memory, groupCount);
+            }
+            ColumnTable table = new ColumnTable(names, columns, groupCount, storage, memory);
+            built = true;
+            return table;
+        } finally {
+            if (!built && storage == ColumnTable.Storage.OFF_HEAP) {
+                memory.close(); // Release direct memory already allocated
+            }
+        }
+    }
+
+    /**
+     * The running value of one aggregate for every group.
+     */
+    private static final class State {
+        final Aggregation.Function function;
+        long[] counts = new long[16]; // Rows for a count, numeric values otherwise
+        double[] doubles;
+        long[] longs;
+        boolean integral; // Whether every value so far was an integer and the longs are exact
+
+        State(Aggregation.Function function) {
+            this.function = function;
+            if (function != Aggregation.Function.COUNT) {
+                doubles = new double[16];
+                integral = function != Aggregation.Function.AVG;
+                longs = integral ? new long[16] : null;
+            }
+        }
+
+        void grow(int capacity) {
+            counts = Arrays.copyOf(counts, capacity);
+            if (doubles != null) {
+                doubles = Arrays.copyOf(doubles, capacity);
+            }
+            if (longs != null) {
+                longs = Arrays.copyOf(longs, capacity);
+            }
+        }
+
+        /**
+         * Adds a non-empty field to a group; fields that are not numbers are skipped.
+         */
+        void add(int group, char[] buf, int start, int end) {
+            if (integral && FieldDecoder.isCanonicalInteger(buf, start, end)) {
+                try {
+                    addLong(group, FieldDecoder.parseLong(buf, start, end));
+                    return;
+                } catch (NumberFormatException | ArithmeticException e) {
+                    integral = false; // Too large for a long, or the sum overflowed
+                    longs = null;
+                }
+            }
+            double value = FieldDecoder.tryParseDouble(buf, start, end);
+            if (value != value) {
+                return; // Not a number
+            }
+            integral = false;
+            longs = null;
+            addDouble(group, value);
+        }
+
+        private void addLong(int group, long value) {
+            boolean first = counts[group] == 0;
+            switch (function) {
+                case SUM:
+                    longs[group] = Math.addExact(longs[group], value);
+                    break;
+                case MIN:
+                    longs[group] = first ? value : Math.min(longs[group], value);
+                    break;
+                default:
+                    longs[group] = first ? value : Math.max(longs[group], value);
+                    break;
+            }
+            addDouble(group, value);
+        }
+
+        private void addDouble(int group, double value) {
+            boolean first = counts[group]++ == 0;
+            switch (function) {
+                case SUM:
+                case AVG:
+                    doubles[group] += value;
+                    break;
+                case MIN:
+                    doubles[group] = first ? value : Math.min(doubles[group], value);
+                    break;
+                default:
+                    doubles[group] = first ? value : Math.max(doubles[group], value);
+                    break;
+            }
+        }
+
+        Column toColumn(ColumnMemory memory, int groups) {
+            ColumnMemory.LongArray nulls = memory.longs(Math.max(1, (groups + 63) >>> 6));
+            if (function == Aggregation.Function.COUNT || integral) {
+                ColumnMemory.LongArray values = memory.longs(Math.max(1, groups));
+                for (int group = 0; group < groups; group++) {
+                    values.set(group, function == Aggregation.Function.COUNT ? counts[group] : longs[group]);
+                    markNull(nulls, group);
+                }
+                return new Column.LongColumn(memory, nulls, values, groups);
+            }
+            ColumnMemory.DoubleArray values = memory.doubles(Math.max(1, groups));
+            for (int group = 0; group < groups; group++) {
+                double value = doubles[group];
+                if (function == Aggregation.Function.AVG && counts[group] > 0) {
+                    value /= counts[group];
+                }
+                values.set(group, value);
+                markNull(nulls, group);
+            }
+            return new Column.DoubleColumn(memory, nulls, values, groups);
+        }
+
+        /**
+         * Marks a group's value as null if the group had no numeric value.
+         */
+        private void markNull(ColumnMemory.LongArray nulls, int group) {
+            if (function != Aggregation.Function.COUNT && counts[group] == 0) {
+                nulls.set(group >>> 6, nulls.get(group >>> 6) | 1L << group);
+            }
+        }
+    }
+}
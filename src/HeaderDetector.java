@@ -0,0 +1,51 @@
+// by Luminaw
+// Pluggable strategy for deciding whether the first row of a file is a header.
+
+import java.util.List;
+
+/**
+ * Decides whether the first row of a CSV file is a header row.
+ * Only the first row of a file is ever a header candidate. A detector may ask to see
+ * a few of the following rows as well, for example to compare their value types.
+ */
+public interface HeaderDetector {
+    /**
+     * Returns how many rows after the first one the detector wants to see.
+     * @return The number of sample rows, or 0 if only the first row is needed
+     */
+    int sampleSize();
+
+    /**
+     * Checks if the first row is a header row.
+     * @param first The first row of the file
+     * @param sample Up to {@link #sampleSize()} rows that follow it; fewer if the file is shorter
+     * @return True if the first row is a header row
+     */
+    boolean isHeader(String[] first, List<String[]> sample);
+
+    /**
+     * Returns a detector that accepts a row whose fields all look like column names:
+     * a letter or underscore, followed by letters, digits, underscores, spaces, dots or dashes.
+     * @return The name-based detector
+     */
+    static HeaderDetector names() {
+        return NameHeaderDetector.INSTANCE;
+    }
+
+    /**
+     * Returns a detector that compares the type profile of the first row with the rows after it.
+     * @param sampleSize The number of rows to compare against
+     * @return The sampling detector
+     */
+    static HeaderDetector sampling(int sampleSize) {
+        return new SamplingHeaderDetector(sampleSize);
+    }
+
+    /**
+     * Returns a detector that never reports a header, so every row is validated.
+     * @return The detector
+     */
+    static HeaderDetector none() {
+        return NoHeaderDetector.INSTANCE;
+    }
+}
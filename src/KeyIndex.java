@@ -0,0 +1,345 @@
+// by Luminaw
+// A persistent hash index from the values of one column to the byte offsets of their rows.
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds rows of a CSV file by the value of a key column, opened with
+ * {@link CSVParser#openKeyIndex(String, int)}. The index is an open-addressing hash
+ * table with one slot per distinct 64-bit key hash, pointing to a chain of the record
+ * offsets of the rows with that hash in file order. It is saved next to the file and
+ * memory-mapped when opened, so it takes no heap space however many rows the file has.
+ * A lookup probes the table and then reads and parses only the record at the stored
+ * offset, checking its key in case two keys have the same hash.
+ * <p>
+ * An index is not thread-safe, since it reuses one row and one read buffer for every
+ * lookup; open one per thread. The mapped table is shared between them by the OS.
+ */
+public final class KeyIndex implements AutoCloseable {
+    private static final long MAGIC = 0x4353564b45593032L; // "CSVKEY02"
+
+    private final CSVParser parser;
+    private final int column;
+    private final ColumnMemory memory;
+    private final ColumnMemory.LongArray table; // Hash and chain ends per slot; hash 0 marks an empty slot
+    private final ColumnMemory.LongArray entries; // Record offset and next entry, or -1, per row
+    private final int mask;
+    private final long keyCount;
+    private final ChannelRecordSource source;
+    private final CSVRow row = new CSVRow();
+
+    private KeyIndex(CSVParser parser, int column, ColumnMemory memory, ColumnMemory.LongArray table,
+                     ColumnMemory.LongArray entries, int capacity, long keyCount, FileChannel csv) {
+        this.parser = parser;
+        this.column = column;
+        this.memory = memory;
+        this.table = table;
+        this.entries = entries;
+        this.mask = capacity - 1;
+        this.keyCount = keyCount;
+        this.source = new ChannelRecordSource(parser, csv);
+        row.cache(parser.getStringCache());
+    }
+
+    /**
+     * Returns the number of keys in the index, which is the number of data rows.
+     * @return The key count
+     */
+    public long size() {
+        return keyCount;
+    }
+
+    /**
+     * Returns the key column.
+     * @return Zero-based column index
+     */
+    public int getColumn() {
+        return column;
+    }
+
+    /**
+     * Finds the first row, in file order, whose key column has a value.
+     * @param key The value to look for; rows missing the column have an empty key
+     * @return The row, or null if no row has that key
+     * @throws CSVParser.CSVParserException If the row cannot be read or fails validation
+     */
+    public String[] find(String key) throws CSVParser.CSVParserException {
+        for (int entry = firstEntry(key); entry >= 0; entry = (int) entries.get(2 * entry + 1)) {
+            if (readRow(entries.get(2 * entry), key)) {
+                return acceptedRow();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds every row whose key column has a value, in file order.
+     * @param key The value to look for
+     * @return The rows; empty if no row has that key
+     * @throws CSVParser.CSVParserException If a row cannot be read or fails validation
+     */
+    public List<String[]> findAll(String key) throws CSVParser.CSVParserException {
+        List<String[]> rows = new ArrayList<>();
+        for (int entry = firstEntry(key); entry >= 0; entry = (int) entries.get(2 * entry + 1)) {
+            if (readRow(entries.get(2 * entry), key)) {
+                rows.add(acceptedRow());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Unmaps the index and closes the CSV file.
+     * @throws CSVParser.CSVParserException If the file cannot be closed
+     */
+    @Override
+    public void close() throws CSVParser.CSVParserException {
+        memory.close();
+        try {
+            source.close();
+        } catch (IOException e) {
+            throw new CSVParser.CSVParserException("Error closing file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Finds the first entry of the chain for a key's hash.
+     * @return The entry, or -1 if no row has a key with that hash
+     */
+    private int firstEntry(String key) {
+        long hash = hash(key);
+        for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+            long stored = table.get(2 * slot);
+            if (stored == 0) {
+                return -1;
+            }
+            if (stored == hash) {
+                return (int) (table.get(2 * slot + 1) >>> 32);
+            }
+        }
+    }
+
+    private boolean readRow(long offset, String key) throws CSVParser.CSVParserException {
+        source.seek(offset);
+        try {
+            if (!source.next(row)) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new CSVParser.CSVParserException("Error reading file: " + e.getMessage(), e);
+        }
+        return column < row.size() ? key.contentEquals(row.field(column)) : key.isEmpty();
+    }
+
+    private String[] acceptedRow() throws CSVParser.CSVParserException {
+        String[] fields = row.toArray();
+        parser.acceptRow(fields, false);
+        return fields;
+    }
+
+    /**
+     * Hashes a key to a non-zero 64-bit value: FNV-1a over the chars, then the MurmurHash3
+     * finalizer so that the low bits used for the slot depend on every char.
+     */
+    static long hash(CharSequence key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * Returns the index file of a CSV file and key column.
+     */
+    static Path indexPath(String filePath, int column) {
+        return Paths.get(filePath + "." + column + ".keys");
+    }
+
+    /**
+     * Opens the saved index of a file if it matches the file and the parser.
+     * @param header Whether the first row is now detected as a header; an index built
+     *               with the other answer is out of date
+     * @return The index, or null if it is missing, damaged or out of date
+     */
+    static KeyIndex open(CSVParser parser, String filePath, int column, boolean header) throws IOException {
+        Path file = Paths.get(filePath);
+        Path path = indexPath(filePath, column);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer start = ByteBuffer.allocate(16);
+            while (start.hasRemaining() && channel.read(start, start.position()) > 0) {
+                // Fill the fixed part of the header
+            }
+            start.flip();
+            if (start.remaining() < 16 || start.getLong() != MAGIC) {
+                return null;
+            }
+            long headerLength = start.getLong();
+            if (headerLength < 16 || headerLength > channel.size()) {
+                return null;
+            }
+            ByteBuffer rest = ByteBuffer.allocate((int) headerLength - 16);
+            while (rest.hasRemaining() && channel.read(rest, 16 + rest.position()) > 0) {
+                // Read the rest of the header
+            }
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(rest.array()));
+            if (in.readLong() != Files.size(file) || in.readLong() != Files.getLastModifiedTime(file).toMillis()
+                    || in.readInt() != column || in.readBoolean() != header
+                    || !in.readUTF().equals(settings(parser))) {
+                return null;
+            }
+            long keyCount = in.readLong();
+            int capacity = in.readInt();
+            if (Integer.bitCount(capacity) != 1 || keyCount < 0
+                    || headerLength + 16L * (capacity + keyCount) != channel.size()) {
+                return null;
+            }
+            ColumnMemory memory = ColumnMemory.direct();
+            FileChannel csv = null;
+            try {
+                ColumnMemory.LongArray table = memory.longs(memory.map(channel, headerLength, 2L * capacity, 3));
+                ColumnMemory.LongArray entries = memory.longs(memory.map(channel,
+                        headerLength + 16L * capacity, 2 * keyCount, 3));
+                csv = FileChannel.open(file, StandardOpenOption.READ);
+                return new KeyIndex(parser, column, memory, table, entries, capacity, keyCount, csv);
+            } catch (IOException | RuntimeException e) {
+                memory.close();
+                if (csv != null) {
+                    csv.close();
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Builds the index of a file and saves it. Rows are counted first with a byte scan
+     * so the table can be sized before it is filled; the table and the entries are
+     * filled in direct memory and then written out. While building, each slot keeps the
+     * first and last entry of its chain, so a repeated key is appended without a walk.
+     * @param parser The parser; its delimiter and quote must be ASCII
+     * @param filePath Path to the CSV file
+     * @param column The key column
+     * @param header Whether the first row is a header, which is not indexed
+     * @throws IOException If the file cannot be read or the index cannot be written
+     */
+    static void build(CSVParser parser, String filePath, int column, boolean header) throws IOException {
+        Path file = Paths.get(filePath);
+        long fileSize = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        long rows = RowIndex.build(file, parser.getQuoteChar(), Integer.MAX_VALUE, false).getRowCount();
+        long wanted = Math.max(16, rows + rows / 3 + 1); // Load factor at most 0.75
+        if (wanted > 1 << 29 || 2 * rows > Integer.MAX_VALUE) { // 2 * capacity has to fit in an int
+            throw new IOException("Too many rows for a key index: " + rows);
+        }
+        int capacity = Integer.highestOneBit((int) wanted - 1) << 1;
+        int mask = capacity - 1;
+
+        ColumnMemory memory = ColumnMemory.direct();
+        try {
+            ColumnMemory.LongArray table = memory.longs(2 * capacity);
+            ColumnMemory.LongArray entries = memory.longs((int) (2 * rows));
+            int keyCount = 0;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                 MappedRecordSource source = new MappedRecordSource(parser, channel, 0, channel.size())) {
+                CSVRow row = new CSVRow();
+                row.select(new int[] {column});
+                boolean first = true;
+                while (source.next(row)) {
+                    if (first && header) {
+                        first = false;
+                        continue;
+                    }
+                    first = false;
+                    long hash = hash(row.field(0));
+                    int slot = (int) hash & mask;
+                    long stored;
+                    while ((stored = table.get(2 * slot)) != 0 && stored != hash) {
+                        slot = (slot + 1) & mask;
+                    }
+                    int entry = keyCount++;
+                    entries.ensure(2 * keyCount);
+                    entries.set(2 * entry, source.recordStart());
+                    entries.set(2 * entry + 1, -1);
+                    if (stored == 0) {
+                        table.set(2 * slot, hash);
+                        table.set(2 * slot + 1, (long) entry << 32 | entry);
+                    } else {
+                        // Link the previous last entry of the chain to this one
+                        long ends = table.get(2 * slot + 1);
+                        entries.set(2 * (int) ends + 1, entry);
+                        table.set(2 * slot + 1, (ends & 0xFFFFFFFF00000000L) | entry);
+                    }
+                }
+            }
+
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            DataOutputStream fields = new DataOutputStream(headerBytes);
+            fields.writeLong(fileSize);
+            fields.writeLong(modified);
+            fields.writeInt(column);
+            fields.writeBoolean(header);
+            fields.writeUTF(settings(parser));
+            fields.writeLong(keyCount);
+            fields.writeInt(capacity);
+            while ((headerBytes.size() + 16) % 8 != 0) {
+                fields.writeByte(0);
+            }
+
+            Path target = indexPath(filePath, column);
+            Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+            try {
+                try (OutputStream stream = Files.newOutputStream(temp);
+                     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16))) {
+                    out.writeLong(MAGIC);
+                    out.writeLong(16 + headerBytes.size());
+                    headerBytes.writeTo(out);
+                    for (int i = 0; i < 2 * capacity; i++) {
+                        out.writeLong(table.get(i));
+                    }
+                    for (int i = 0; i < 2 * keyCount; i++) {
+                        out.writeLong(entries.get(i));
+                    }
+                }
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } finally {
+            memory.close();
+        }
+    }
+
+    /**
+     * Describes the parser settings that decide which records are indexed and where
+     * their fields start and end.
+     */
+    private static String settings(CSVParser parser) {
+        return "delimiter=" + parser.getDelimiter() + ";quote=" + parser.getQuoteChar()
+                + ";header=" + parser.getHeaderDetector().getClass().getName();
+    }
+}
@@ -0,0 +1,71 @@
+// by Luminaw
+// Reads CSV records from a memory-mapped file.
+// Line boundaries are found directly on the mapped bytes; only field contents are decoded.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A record source that reads a file, or a byte range of it, through {@link FileChannel#map}.
+ * Ranges larger than a single mapping are read through a sliding window of mapped regions.
+ */
+class MappedRecordSource extends ByteRecordSource {
+    private static final int MAX_WINDOW = 1 << 30;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    private final long end;
+    private long nextPosition;
+
+    MappedRecordSource(CSVParser parser, String filePath) throws IOException {
+        super(parser);
+        this.channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ);
+        this.ownsChannel = true;
+        try {
+            this.end = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Creates a source over part of an open file. The range must start at the beginning of a
+     * line; the channel is left open when this source is closed.
+     * @param start Offset of the first byte to read
+     * @param end Offset just past the last byte to read
+     */
+    MappedRecordSource(CSVParser parser, FileChannel channel, long start, long end) {
+        super(parser);
+        this.channel = channel;
+        this.ownsChannel = false;
+        this.end = end;
+        this.nextPosition = start;
+        this.buffer = ByteBuffer.allocate(0);
+    }
+
+    @Override
+    protected boolean nextBuffer() throws IOException {
+        if (nextPosition >= end) {
+            return false;
+        }
+        long size = Math.min(end - nextPosition, MAX_WINDOW);
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, nextPosition, size).order(ByteOrder.LITTLE_ENDIAN);
+        bufferStart = nextPosition;
+        nextPosition += size;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+}
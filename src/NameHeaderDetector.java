@@ -0,0 +1,72 @@
+// by Luminaw
+// Header detection based on what column names usually look like.
+
+import java.util.List;
+
+/**
+ * Accepts a first row whose fields all look like column names, such as "id", "user_id"
+ * or "Order Date". Characters are checked against precomputed ASCII tables, so no
+ * regular expression is compiled or run.
+ */
+final class NameHeaderDetector implements HeaderDetector {
+    static final NameHeaderDetector INSTANCE = new NameHeaderDetector();
+
+    private static final boolean[] START = new boolean[128];
+    private static final boolean[] PART = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            START[c] = true;
+            START[Character.toUpperCase(c)] = true;
+        }
+        START['_'] = true;
+        System.arraycopy(START, 0, PART, 0, START.length);
+        for (char c = '0'; c <= '9'; c++) {
+            PART[c] = true;
+        }
+        PART[' '] = true;
+        PART['.'] = true;
+        PART['-'] = true;
+    }
+
+    private NameHeaderDetector() {
+    }
+
+    @Override
+    public int sampleSize() {
+        return 0;
+    }
+
+    @Override
+    public boolean isHeader(String[] first, List<String[]> sample) {
+        for (String field : first) {
+            if (!isName(field)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a single value looks like a column name.
+     * @param field The value to check
+     * @return True if the value starts with a letter or underscore and contains only name characters
+     */
+    static boolean isName(String field) {
+        int length = field.length();
+        if (length == 0) {
+            return false;
+        }
+        char c = field.charAt(0);
+        if (c >= 128 || !START[c]) {
+            return false;
+        }
+        for (int i = 1; i < length; i++) {
+            c = field.charAt(i);
+            if (c >= 128 || !PART[c]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
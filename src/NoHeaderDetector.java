@@ -0,0 +1,24 @@
+// by Luminaw
+// Header detection for files that never have a header row.
+
+import java.util.List;
+
+/**
+ * Never reports a header, so every row of the file is validated as data.
+ */
+final class NoHeaderDetector implements HeaderDetector {
+    static final NoHeaderDetector INSTANCE = new NoHeaderDetector();
+
+    private NoHeaderDetector() {
+    }
+
+    @Override
+    public int sampleSize() {
+        return 0;
+    }
+
+    @Override
+    public boolean isHeader(String[] first, List<String[]> sample) {
+        return false;
+    }
+}
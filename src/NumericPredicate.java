@@ -0,0 +1,69 @@
+// by Luminaw
+// Range comparison on numeric fields, read directly from the field's characters.
+
+/**
+ * Compares a field with a numeric range without creating a String for it. Values are
+ * decoded with {@link FieldDecoder#tryParseDouble(char[], int, int)}; anything that is not
+ * a decimal number, and NaN, does not match.
+ */
+final class NumericPredicate implements FieldPredicate {
+    private final double min;
+    private final boolean minInclusive;
+    private final double max;
+    private final boolean maxInclusive;
+
+    NumericPredicate(double min, boolean minInclusive, double max, boolean maxInclusive) {
+        if (Double.isNaN(min) || Double.isNaN(max)) {
+            throw new IllegalArgumentException("Bounds cannot be NaN");
+        }
+        this.min = min;
+        this.minInclusive = minInclusive;
+        this.max = max;
+        this.maxInclusive = maxInclusive;
+    }
+
+    /** Reused per thread by {@link #test(CharSequence)}; predicates are shared between parser threads. */
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[64]);
+
+    @Override
+    public boolean test(CharSequence value) {
+        int length = value.length();
+        char[] chars = SCRATCH.get();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+            SCRATCH.set(chars);
+        }
+        for (int i = 0; i < length; i++) {
+            chars[i] = value.charAt(i);
+        }
+        return test(chars, 0, length);
+    }
+
+    /**
+     * Returns the range of values matched by both this predicate and another.
+     * @param other The other range
+     * @return The intersection, which matches nothing if the ranges do not overlap
+     */
+    NumericPredicate intersect(NumericPredicate other) {
+        double newMin = Math.max(min, other.min);
+        boolean newMinInclusive = (min != newMin || minInclusive) && (other.min != newMin || other.minInclusive);
+        double newMax = Math.min(max, other.max);
+        boolean newMaxInclusive = (max != newMax || maxInclusive) && (other.max != newMax || other.maxInclusive);
+        return new NumericPredicate(newMin, newMinInclusive, newMax, newMaxInclusive);
+    }
+
+    /**
+     * Tests a field in a char buffer; used by {@link CSVRow} to avoid the CharSequence view.
+     * @param buf The buffer
+     * @param start Index of the first character
+     * @param end Index just past the last character
+     * @return True if the field is a number within the range
+     */
+    boolean test(char[] buf, int start, int end) {
+        double v = FieldDecoder.tryParseDouble(buf, start, end);
+        if (v != v) {
+            return false; // Not a number
+        }
+        return (minInclusive ? v >= min : v > min) && (maxInclusive ? v <= max : v < max);
+    }
+}
@@ -0,0 +1,205 @@
+// by Luminaw
+// Splits a CSV file into byte ranges and tokenizes them concurrently.
+// Each range is aligned to a record start, taking quoted line breaks into account.
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parallel tokenization used by {@link CSVParser#parseParallel(String, ForkJoinPool)}.
+ * Rows are returned raw, one list per chunk in file order; header detection and
+ * validation are left to the caller because they depend on the rows before them.
+ */
+final class ParallelParser {
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelParser() {
+    }
+
+    /**
+     * Tokenizes a file in parallel.
+     * @param parser The parser providing the tokenizer configuration
+     * @param filePath Path to the CSV file
+     * @param columns Resolved projection columns, or null for all columns
+     * @param tests Resolved filter predicates, or null to keep every row; the first
+     *              record of the file is never filtered
+     * @param strings Cache to deduplicate field values through, or null; each task
+     *                uses its own copy and the counts are added to this one
+     * @param pool The pool that runs the chunk tasks
+     * @return The rows of each chunk, in file order
+     * @throws IOException If the file cannot be read
+     */
+    static List<List<String[]>> parseChunks(CSVParser parser, String filePath, int[] columns,
+                                            FieldPredicate[] tests, StringCache strings,
+                                            ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel, (byte) parser.getQuoteChar(), pool);
+            List<ForkJoinTask<List<String[]>>> tasks = new ArrayList<>();
+            StringCache[] caches = new StringCache[bounds.length];
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                final long start = bounds[i];
+                final long end = bounds[i + 1];
+                final StringCache cache = caches[i] = strings != null ? strings.emptyCopy() : null;
+                tasks.add(pool.submit(() -> parseRange(parser, channel, start, end, columns, tests, cache)));
+            }
+            List<List<String[]>> chunks = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                chunks.add(join(tasks.get(i)));
+                if (strings != null) {
+                    strings.addStatistics(caches[i]);
+                }
+            }
+            return chunks;
+        }
+    }
+
+    private static List<String[]> parseRange(CSVParser parser, FileChannel channel, long start, long end,
+                                             int[] columns, FieldPredicate[] tests,
+                                             StringCache strings) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        if (start == end) {
+            return rows;
+        }
+        try (MappedRecordSource source = new MappedRecordSource(parser, channel, start, end)) {
+            CSVRow row = new CSVRow();
+            row.select(columns);
+            row.cache(strings);
+            // The first record of the file may be the header, so the caller filters it
+            row.filter(start == 0 ? null : tests);
+            while (source.next(row)) {
+                if (row.accepted()) {
+                    rows.add(row.toArray());
+                }
+                row.filter(tests);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Computes chunk boundaries aligned to record starts. A first pass counts the quote
+     * bytes in each nominal chunk in parallel; the running parity of those counts gives
+     * the exact quote state at every split point, so a quoted field that spans a split
+     * point (including one containing line breaks) is never cut in two.
+     */
+    static long[] chunkBounds(FileChannel channel, byte quote, ForkJoinPool pool) throws IOException {
+        long size = channel.size();
+        long chunkSize = Math.max(MIN_CHUNK_SIZE, size / ((long) pool.getParallelism() * CHUNKS_PER_THREAD) + 1);
+        List<Long> nominal = new ArrayList<>();
+        for (long position = 0; position < size; position += chunkSize) {
+            nominal.add(position);
+        }
+        nominal.add(size);
+
+        List<ForkJoinTask<Boolean>> parities = new ArrayList<>();
+        for (int i = 0; i + 2 < nominal.size(); i++) {
+            final long start = nominal.get(i);
+            final long end = nominal.get(i + 1);
+            parities.add(pool.submit(() -> hasOddQuotes(channel, quote, start, end)));
+        }
+
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long last = 0;
+        boolean inQuotes = false;
+        for (int i = 1; i + 1 < nominal.size(); i++) {
+            inQuotes ^= join(parities.get(i - 1));
+            long position = nominal.get(i);
+            if (position < last) continue; // Previous boundary is already past this point
+            long start = nextRecordStart(channel, quote, position, inQuotes, size);
+            if (start > last) {
+                bounds.add(start);
+                last = start;
+            }
+        }
+        if (last < size) {
+            bounds.add(size);
+        }
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static boolean hasOddQuotes(FileChannel channel, byte quote, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        boolean odd = false;
+        long pos = start;
+        while (pos < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - pos));
+            int read = channel.read(buffer, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == quote) {
+                    odd = !odd;
+                }
+            }
+            pos += read;
+        }
+        return odd;
+    }
+
+    /**
+     * Finds the first record start at or after a position, given the quote state there.
+     * A record starts after "\n", after "\r\n", or after a "\r" not followed by "\n",
+     * as long as the terminator is outside quotes.
+     */
+    private static long nextRecordStart(FileChannel channel, byte quote, long position, boolean inQuotes,
+                                        long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        // Start one byte early so a terminator just before the split point is seen
+        long pos = position - 1;
+        buffer.limit(1);
+        channel.read(buffer, pos);
+        if (buffer.get(0) == quote) {
+            inQuotes = !inQuotes;
+        }
+        boolean afterCR = false;
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) break;
+            for (int i = 0; i < read; i++, pos++) {
+                byte b = buffer.get(i);
+                if (afterCR) {
+                    return b == '\n' ? pos + 1 : pos;
+                }
+                if (b == quote) {
+                    inQuotes = !inQuotes;
+                } else if (!inQuotes) {
+                    if (b == '\n') {
+                        return pos + 1;
+                    }
+                    afterCR = b == '\r';
+                }
+            }
+        }
+        return size;
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
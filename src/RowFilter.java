@@ -0,0 +1,127 @@
+// by Luminaw
+// Column conditions that the parser checks while tokenizing, so rejected rows are never built.
+
+import java.util.Arrays;
+
+/**
+ * A set of {@link FieldPredicate}s on columns, all of which must hold for a row to be kept.
+ * Columns are given by zero-based position or by header name. The parser tests each
+ * predicate as soon as its field has been tokenized; once one fails, the rest of the
+ * record is only scanned for its end, and the row is neither copied into Strings nor
+ * passed to validation. The first row of a file is never filtered if it is detected as
+ * the header.
+ */
+public final class RowFilter {
+    private final int[] indices;
+    private final String[] names;
+    private final FieldPredicate[] predicates;
+
+    private RowFilter(int[] indices, String[] names, FieldPredicate[] predicates) {
+        this.indices = indices;
+        this.names = names;
+        this.predicates = predicates;
+    }
+
+    /**
+     * Creates a filter with a condition on a column position.
+     * @param column Zero-based column index
+     * @param predicate The condition on the column's value
+     * @return The filter
+     */
+    public static RowFilter where(int column, FieldPredicate predicate) {
+        return new RowFilter(new int[0], new String[0], new FieldPredicate[0]).and(column, predicate);
+    }
+
+    /**
+     * Creates a filter with a condition on a named column.
+     * @param name The column name as it appears in the first row
+     * @param predicate The condition on the column's value
+     * @return The filter
+     */
+    public static RowFilter where(String name, FieldPredicate predicate) {
+        return new RowFilter(new int[0], new String[0], new FieldPredicate[0]).and(name, predicate);
+    }
+
+    /**
+     * Returns a filter that also requires a condition on a column position.
+     * @param column Zero-based column index
+     * @param predicate The condition on the column's value
+     * @return A new filter; this one is unchanged
+     */
+    public RowFilter and(int column, FieldPredicate predicate) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Column index cannot be negative: " + column);
+        }
+        return add(column, null, predicate);
+    }
+
+    /**
+     * Returns a filter that also requires a condition on a named column.
+     * @param name The column name as it appears in the first row
+     * @param predicate The condition on the column's value
+     * @return A new filter; this one is unchanged
+     */
+    public RowFilter and(String name, FieldPredicate predicate) {
+        if (name == null) {
+            throw new IllegalArgumentException("Column name cannot be null");
+        }
+        return add(-1, name, predicate);
+    }
+
+    private RowFilter add(int column, String name, FieldPredicate predicate) {
+        if (predicate == null) {
+            throw new IllegalArgumentException("Predicate cannot be null");
+        }
+        int n = predicates.length;
+        int[] i = Arrays.copyOf(indices, n + 1);
+        String[] s = Arrays.copyOf(names, n + 1);
+        FieldPredicate[] p = Arrays.copyOf(predicates, n + 1);
+        i[n] = column;
+        s[n] = name;
+        p[n] = predicate;
+        return new RowFilter(i, s, p);
+    }
+
+    /**
+     * Resolves the filter to one combined predicate per source column.
+     * @param header The first row of the file, used to find named columns
+     * @return Predicates indexed by column position, null where a column has none
+     * @throws CSVParser.CSVParserException If a named column is not in the header
+     */
+    FieldPredicate[] resolve(String[] header) throws CSVParser.CSVParserException {
+        int[] columns = new int[predicates.length];
+        int max = 0;
+        for (int t = 0; t < predicates.length; t++) {
+            int column = indices[t];
+            if (names[t] != null) {
+                column = Arrays.asList(header).indexOf(names[t]);
+                if (column < 0) {
+                    throw new CSVParser.CSVParserException("Column not found in header: " + names[t]);
+                }
+            }
+            columns[t] = column;
+            max = Math.max(max, column);
+        }
+        FieldPredicate[] tests = new FieldPredicate[max + 1];
+        for (int t = 0; t < predicates.length; t++) {
+            FieldPredicate existing = tests[columns[t]];
+            tests[columns[t]] = existing == null ? predicates[t] : existing.and(predicates[t]);
+        }
+        return tests;
+    }
+
+    /**
+     * Tests an already parsed row.
+     * @param row The full row
+     * @param tests Resolved predicates from {@link #resolve(String[])}
+     * @return True if every predicate holds; missing columns are tested as empty
+     */
+    static boolean accepts(String[] row, FieldPredicate[] tests) {
+        for (int column = 0; column < tests.length; column++) {
+            if (tests[column] != null && !tests[column].test(column < row.length ? row[column] : "")) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
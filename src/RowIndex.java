@@ -0,0 +1,229 @@
+// by Luminaw
+// A sparse index of record offsets that lets a reader start parsing at any row of a file.
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The byte offset of every Kth record of a CSV file, built by
+ * {@link CSVParser#indexRows(String, int)} and used by
+ * {@link CSVParser#readRows(String, RowIndex, long, int)} to parse a window of rows
+ * without reading the rows before it. Rows are numbered like the list returned by
+ * {@link CSVParser#parse(String)}: from 0, counting a header row, skipping empty records.
+ * <p>
+ * The index is found with a scan of the raw bytes that tracks quotes, so line breaks
+ * inside quoted fields do not start a new row, and nothing is tokenized. It is saved
+ * next to the file as {@code filePath + ".idx"} and belongs to the file's current size
+ * and modification time.
+ */
+public final class RowIndex {
+    /** Suffix added to the CSV file name to get the index file name. */
+    static final String SUFFIX = ".idx";
+
+    private static final long MAGIC = 0x4353564944583031L; // "CSVIDX01"
+
+    private final int interval;
+    private final long rowCount;
+    private final long[] offsets;
+    private final boolean header;
+    private final char quoteChar;
+    private final long fileSize;
+    private final long modified;
+
+    private RowIndex(int interval, long rowCount, long[] offsets, boolean header, char quoteChar,
+                     long fileSize, long modified) {
+        this.interval = interval;
+        this.rowCount = rowCount;
+        this.offsets = offsets;
+        this.header = header;
+        this.quoteChar = quoteChar;
+        this.fileSize = fileSize;
+        this.modified = modified;
+    }
+
+    /**
+     * Returns the number of rows in the file.
+     * @return The row count, including a header row
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns how many rows apart the indexed offsets are. Reading a window parses at
+     * most this many rows before the first one returned.
+     * @return The interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Checks if the first row of the file is a header row.
+     * @return True if the first row is a header
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+
+    /**
+     * Returns the byte offset of the indexed row at or before a row.
+     * @param row Zero-based row number
+     * @return The offset of row {@code row - row % interval}
+     */
+    long offsetBefore(long row) {
+        return offsets[(int) (row / interval)];
+    }
+
+    /**
+     * Checks if the index was built for a file as it is now.
+     * @param file The CSV file
+     * @param quoteChar The quote character of the parser
+     * @return True if the size and modification time still match
+     * @throws IOException If the file attributes cannot be read
+     */
+    boolean matches(Path file, char quoteChar) throws IOException {
+        return this.quoteChar == quoteChar && Files.size(file) == fileSize
+                && Files.getLastModifiedTime(file).toMillis() == modified;
+    }
+
+    /**
+     * Scans a file for record starts.
+     * @param file The CSV file
+     * @param quoteChar The quote character; must be ASCII
+     * @param interval Rows between indexed offsets
+     * @param header Whether the first row is a header
+     * @return The index
+     * @throws IOException If the file cannot be read
+     */
+    static RowIndex build(Path file, char quoteChar, int interval, boolean header) throws IOException {
+        long fileSize = Files.size(file);
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        byte quote = (byte) quoteChar;
+        long[] offsets = new long[16];
+        long rows = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        byte[] bytes = buffer.array();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long lineStart = 0;
+            boolean inQuotes = false;
+            boolean blank = true;
+            boolean afterCR = false;
+            int read;
+            while ((read = channel.read(buffer)) >= 0) {
+                for (int i = 0; i < read; i++, position++) {
+                    byte b = bytes[i];
+                    if (afterCR) {
+                        afterCR = false;
+                        if (b == '\n') {
+                            lineStart = position + 1; // Second half of "\r\n"
+                            continue;
+                        }
+                    }
+                    if (b == quote) {
+                        inQuotes = !inQuotes;
+                    } else if (!inQuotes && (b == '\n' || b == '\r')) {
+                        if (!blank) {
+                            offsets = record(offsets, rows++, lineStart, interval);
+                        }
+                        lineStart = position + 1;
+                        blank = true;
+                        afterCR = b == '\r';
+                        continue;
+                    }
+                    if ((b & 0xFF) > ' ') {
+                        blank = false;
+                    }
+                }
+                buffer.clear();
+            }
+            if (!blank) {
+                offsets = record(offsets, rows++, lineStart, interval);
+            }
+        }
+        int count = (int) ((rows + interval - 1) / interval);
+        return new RowIndex(interval, rows, Arrays.copyOf(offsets, count), header, quoteChar, fileSize, modified);
+    }
+
+    private static long[] record(long[] offsets, long row, long offset, int interval) {
+        if (row % interval != 0) {
+            return offsets;
+        }
+        int slot = (int) (row / interval);
+        if (slot == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[slot] = offset;
+        return offsets;
+    }
+
+    /**
+     * Saves the index next to its CSV file.
+     * @param file The CSV file
+     * @throws IOException If the index file cannot be written
+     */
+    void save(Path file) throws IOException {
+        Path target = Paths.get(file + SUFFIX);
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeLong(MAGIC);
+                out.writeInt(interval);
+                out.writeLong(rowCount);
+                out.writeBoolean(header);
+                out.writeChar(quoteChar);
+                out.writeLong(fileSize);
+                out.writeLong(modified);
+                out.writeInt(offsets.length);
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Loads the index saved next to a CSV file.
+     * @param file The CSV file
+     * @return The index, or null if there is no index file or it cannot be read
+     */
+    static RowIndex load(Path file) {
+        Path source = Paths.get(file + SUFFIX);
+        if (!Files.isRegularFile(source)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(source)))) {
+            if (in.readLong() != MAGIC) {
+                return null;
+            }
+            int interval = in.readInt();
+            long rowCount = in.readLong();
+            boolean header = in.readBoolean();
+            char quoteChar = in.readChar();
+            long fileSize = in.readLong();
+            long modified = in.readLong();
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+            }
+            return new RowIndex(interval, rowCount, offsets, header, quoteChar, fileSize, modified);
+        } catch (IOException | RuntimeException e) {
+            return null; // Damaged index; the caller rebuilds it
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// by Luminaw
+// Header detection that compares the first row with a sample of the rows after it.
+
+import java.util.List;
+
+/**
+ * Decides on a header by comparing the first row with the rows that follow it.
+ * Each column votes: if the sampled values are all of one numeric or boolean type, the
+ * column votes for a header when the first value has a different type. If the sampled
+ * values are all text of the same length, it votes for a header when the first value
+ * has a different length. Columns with mixed sample values do not vote. The first row
+ * is a header when the votes for outnumber the votes against. Without any sample rows
+ * the decision falls back to {@link NameHeaderDetector}.
+ */
+final class SamplingHeaderDetector implements HeaderDetector {
+    private static final int EMPTY = 0;
+    private static final int INTEGER = 1;
+    private static final int DECIMAL = 2;
+    private static final int BOOLEAN = 3;
+    private static final int TEXT = 4;
+
+    private final int sampleSize;
+
+    /**
+     * Constructs a SamplingHeaderDetector.
+     * @param sampleSize The number of rows after the first to compare against
+     */
+    SamplingHeaderDetector(int sampleSize) {
+        if (sampleSize < 1) {
+            throw new IllegalArgumentException("Sample size must be at least 1");
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    @Override
+    public int sampleSize() {
+        return sampleSize;
+    }
+
+    @Override
+    public boolean isHeader(String[] first, List<String[]> sample) {
+        if (sample.isEmpty()) {
+            return NameHeaderDetector.INSTANCE.isHeader(first, sample);
+        }
+        int votes = 0;
+        for (int column = 0; column < first.length; column++) {
+            int type = -1;
+            int length = -1;
+            boolean mixed = false;
+            for (String[] row : sample) {
+                if (column >= row.length) continue;
+                String value = row[column];
+                int t = typeOf(value);
+                if (t == EMPTY) continue;
+                if (type == -1) {
+                    type = t;
+                    length = value.length();
+                } else {
+                    mixed |= t != type;
+                    if (length != value.length()) {
+                        length = -2; // Lengths differ
+                    }
+                }
+            }
+            if (type == -1 || mixed) continue;
+            if (type != TEXT) {
+                votes += typeOf(first[column]) != type ? 1 : -1;
+            } else if (length >= 0) {
+                votes += first[column].length() != length ? 1 : -1;
+            }
+        }
+        return votes > 0;
+    }
+
+    /**
+     * Classifies a value without regular expressions or exceptions.
+     */
+    static int typeOf(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return EMPTY;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return BOOLEAN;
+        }
+        int i = 0;
+        char c = value.charAt(0);
+        if (c == '+' || c == '-') {
+            i++;
+        }
+        int digits = 0;
+        boolean dot = false;
+        boolean exponent = false;
+        for (; i < length; i++) {
+            c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+            } else if (c == '.' && !dot && !exponent) {
+                dot = true;
+            } else if ((c == 'e' || c == 'E') && digits > 0 && !exponent) {
+                exponent = true;
+                digits = 0;
+                if (i + 1 < length && (value.charAt(i + 1) == '+' || value.charAt(i + 1) == '-')) {
+                    i++;
+                }
+            } else {
+                return TEXT;
+            }
+        }
+        if (digits == 0) {
+            return TEXT;
+        }
+        return dot || exponent ? DECIMAL : INTEGER;
+    }
+}
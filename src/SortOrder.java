@@ -0,0 +1,229 @@
+// by Luminaw
+// The columns and comparisons that CSVParser.sort orders rows by.
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A list of sort keys for {@link CSVParser#sort(String, String, SortOrder)}. Each key is
+ * a column, given by zero-based position or by header name, compared as text, as a
+ * number or with a comparator; later keys break ties between rows that are equal on
+ * earlier ones. Rows that are equal on every key keep their order from the file.
+ * A column that is missing from a short row is compared as an empty string.
+ */
+public final class SortOrder {
+    /**
+     * How the values of a key column are compared.
+     */
+    public enum Type {
+        /** By {@link String#compareTo(String)}, which orders by UTF-16 code unit. */
+        TEXT,
+        /**
+         * As decimal numbers. Values that are not numbers, including empty values and NaN,
+         * come after every number and are ordered as text among themselves. This holds for
+         * a {@link SortOrder#descending() descending} key too: only the numbers are reversed.
+         */
+        NUMBER
+    }
+
+    private final int[] indices;
+    private final String[] names;
+    private final Type[] types;
+    private final Comparator<? super String>[] comparators;
+    private final boolean[] descending;
+
+    private SortOrder(int[] indices, String[] names, Type[] types, Comparator<? super String>[] comparators,
+                      boolean[] descending) {
+        this.indices = indices;
+        this.names = names;
+        this.types = types;
+        this.comparators = comparators;
+        this.descending = descending;
+    }
+
+    /**
+     * Creates an order by a column position.
+     * @param column Zero-based column index
+     * @param type How the column's values are compared
+     * @return The order
+     */
+    public static SortOrder by(int column, Type type) {
+        return empty().thenBy(column, type);
+    }
+
+    /**
+     * Creates an order by a named column.
+     * @param name The column name as it appears in the first row
+     * @param type How the column's values are compared
+     * @return The order
+     */
+    public static SortOrder by(String name, Type type) {
+        return empty().thenBy(name, type);
+    }
+
+    /**
+     * Creates an order by a column position, compared with a comparator.
+     * @param column Zero-based column index
+     * @param comparator Compares two values of the column
+     * @return The order
+     */
+    public static SortOrder by(int column, Comparator<? super String> comparator) {
+        return empty().thenBy(column, comparator);
+    }
+
+    /**
+     * Creates an order by a named column, compared with a comparator.
+     * @param name The column name as it appears in the first row
+     * @param comparator Compares two values of the column
+     * @return The order
+     */
+    public static SortOrder by(String name, Comparator<? super String> comparator) {
+        return empty().thenBy(name, comparator);
+    }
+
+    /**
+     * Returns an order that also sorts by a column position.
+     * @param column Zero-based column index
+     * @param type How the column's values are compared
+     * @return A new order; this one is unchanged
+     */
+    public SortOrder thenBy(int column, Type type) {
+        return add(checkColumn(column), null, checkType(type), null);
+    }
+
+    /**
+     * Returns an order that also sorts by a named column.
+     * @param name The column name as it appears in the first row
+     * @param type How the column's values are compared
+     * @return A new order; this one is unchanged
+     */
+    public SortOrder thenBy(String name, Type type) {
+        return add(-1, checkName(name), checkType(type), null);
+    }
+
+    /**
+     * Returns an order that also sorts by a column position, compared with a comparator.
+     * @param column Zero-based column index
+     * @param comparator Compares two values of the column
+     * @return A new order; this one is unchanged
+     */
+    public SortOrder thenBy(int column, Comparator<? super String> comparator) {
+        return add(checkColumn(column), null, Type.TEXT, checkComparator(comparator));
+    }
+
+    /**
+     * Returns an order that also sorts by a named column, compared with a comparator.
+     * @param name The column name as it appears in the first row
+     * @param comparator Compares two values of the column
+     * @return A new order; this one is unchanged
+     */
+    public SortOrder thenBy(String name, Comparator<? super String> comparator) {
+        return add(-1, checkName(name), Type.TEXT, checkComparator(comparator));
+    }
+
+    /**
+     * Returns an order whose last key sorts from the largest value to the smallest. For a
+     * {@link Type#NUMBER} key, values that are not numbers still come last.
+     * @return A new order; this one is unchanged
+     */
+    public SortOrder descending() {
+        boolean[] d = descending.clone();
+        d[d.length - 1] = !d[d.length - 1];
+        return new SortOrder(indices, names, types, comparators, d);
+    }
+
+    /**
+     * Returns the number of sort keys.
+     * @return The key count
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Returns how a key's values are compared.
+     */
+    Type type(int key) {
+        return types[key];
+    }
+
+    /**
+     * Returns the comparator of a key compared as text.
+     */
+    Comparator<? super String> comparator(int key) {
+        return comparators[key] != null ? comparators[key] : Comparator.<String>naturalOrder();
+    }
+
+    /**
+     * Checks if a key sorts from the largest value to the smallest.
+     */
+    boolean isDescending(int key) {
+        return descending[key];
+    }
+
+    /**
+     * Resolves the keys to column positions.
+     * @param header The first row of the file, used to find named columns
+     * @return The column of each key, in key order
+     * @throws CSVParser.CSVParserException If a named column is not in the header
+     */
+    int[] resolve(String[] header) throws CSVParser.CSVParserException {
+        int[] columns = indices.clone();
+        for (int k = 0; k < columns.length; k++) {
+            if (names[k] != null) {
+                columns[k] = Arrays.asList(header).indexOf(names[k]);
+                if (columns[k] < 0) {
+                    throw new CSVParser.CSVParserException("Column not found in header: " + names[k]);
+                }
+            }
+        }
+        return columns;
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static SortOrder empty() {
+        return new SortOrder(new int[0], new String[0], new Type[0], new Comparator[0], new boolean[0]);
+    }
+
+    private SortOrder add(int column, String name, Type type, Comparator<? super String> comparator) {
+        int n = types.length;
+        int[] i = Arrays.copyOf(indices, n + 1);
+        String[] s = Arrays.copyOf(names, n + 1);
+        Type[] t = Arrays.copyOf(types, n + 1);
+        Comparator<? super String>[] c = Arrays.copyOf(comparators, n + 1);
+        boolean[] d = Arrays.copyOf(descending, n + 1);
+        i[n] = column;
+        s[n] = name;
+        t[n] = type;
+        c[n] = comparator;
+        return new SortOrder(i, s, t, c, d);
+    }
+
+    private static int checkColumn(int column) {
+        if (column < 0) {
+            throw new IllegalArgumentException("Column index cannot be negative: " + column);
+        }
+        return column;
+    }
+
+    private static String checkName(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Column name cannot be null");
+        }
+        return name;
+    }
+
+    private static Type checkType(Type type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Sort type cannot be null");
+        }
+        return type;
+    }
+
+    private static Comparator<? super String> checkComparator(Comparator<? super String> comparator) {
+        if (comparator == null) {
+            throw new IllegalArgumentException("Comparator cannot be null");
+        }
+        return comparator;
+    }
+}
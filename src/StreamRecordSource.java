@@ -0,0 +1,43 @@
+// by Luminaw
+// Reads CSV records from a byte stream without decoding it through a Reader.
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A record source that reads raw UTF-8 bytes from a stream in fixed-size blocks.
+ */
+class StreamRecordSource extends ByteRecordSource {
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    StreamRecordSource(CSVParser parser, InputStream in) {
+        super(parser);
+        this.in = in;
+        this.buffer = ByteBuffer.wrap(block, 0, 0).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    protected boolean nextBuffer() throws IOException {
+        int read;
+        do {
+            read = in.read(block);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        bufferStart += buffer.limit();
+        buffer.clear();
+        buffer.limit(read);
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,146 @@
+// by Luminaw
+// A small fixed-size cache that lets repeated field values share one String instance.
+
+import java.util.Arrays;
+
+/**
+ * A direct-mapped cache of recently created field Strings. When set on a parser with
+ * {@link CSVParser#setStringCache(StringCache)}, rows look up each field by its characters
+ * before creating a String, so a value that repeats, such as a status or a country code,
+ * is returned as the instance already in the cache. Unlike {@link String#intern()} the
+ * cache never grows: a new value replaces whatever was in its slot. Hit and miss counts
+ * are kept so the size can be tuned.
+ * <p>
+ * A cache is not thread-safe. {@link CSVParser#parseParallel(String, java.util.concurrent.ForkJoinPool)} gives
+ * each task its own cache of the same size and adds their counts to this one.
+ */
+public final class StringCache {
+    /** Longer values are rarely repeated and are created without a lookup. */
+    static final int MAX_LENGTH = 64;
+
+    private final String[] entries;
+    private final int mask;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a cache.
+     * @param size The number of entries, rounded up to a power of two
+     * @throws IllegalArgumentException If the size is less than 1 or more than 2^30
+     */
+    public StringCache(int size) {
+        if (size < 1 || size > 1 << 30) {
+            throw new IllegalArgumentException("Cache size must be between 1 and 2^30");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new String[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Returns the number of entries.
+     * @return The cache size
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns the number of lookups that found the value already in the cache.
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups that had to create a new String.
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the share of lookups that were hits.
+     * @return The hit rate between 0 and 1, or 0 if there were no lookups
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Resets the hit and miss counts without emptying the cache.
+     */
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Removes all entries and resets the statistics.
+     */
+    public void clear() {
+        Arrays.fill(entries, null);
+        resetStatistics();
+    }
+
+    /**
+     * Returns a String with the given characters, from the cache if it holds one.
+     * @param buf Buffer holding the value
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @return The value
+     */
+    String get(char[] buf, int start, int end) {
+        int length = end - start;
+        if (length > MAX_LENGTH) {
+            return new String(buf, start, length);
+        }
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buf[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String cached = entries[slot];
+        if (cached != null && matches(cached, buf, start, length)) {
+            hits++;
+            return cached;
+        }
+        misses++;
+        String value = new String(buf, start, length);
+        entries[slot] = value;
+        return value;
+    }
+
+    /**
+     * Creates an empty cache of the same size, for use by another thread.
+     */
+    StringCache emptyCopy() {
+        return new StringCache(entries.length);
+    }
+
+    /**
+     * Adds the counts of another cache to this one.
+     */
+    void addStatistics(StringCache other) {
+        hits += other.hits;
+        misses += other.misses;
+    }
+
+    private static boolean matches(String value, char[] buf, int start, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (value.charAt(i) != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,166 @@
+// by Luminaw
+// Finds structural bytes (delimiters, quotes, line breaks) in blocks of 64 bytes.
+// Each block is classified into a bitmask eight bytes at a time, then matches are read off the mask.
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Locates the next occurrence of any of up to four target bytes in a buffer.
+ * Long inputs are processed in 64-byte blocks: {@link #mask(ByteBuffer, int)} classifies a
+ * whole block into a bitmask with one bit per matching byte, and successive calls read
+ * matches off that mask with {@link Long#numberOfTrailingZeros(long)} instead of testing
+ * the bytes again. The mask is computed a 64-bit word at a time with SWAR bit tricks,
+ * which needs nothing beyond {@link ByteBuffer#getLong(int)}. Inputs shorter than a block
+ * fall back to a plain byte loop.
+ * <p>
+ * Buffers must use {@link ByteOrder#LITTLE_ENDIAN} so that byte i of a word lands in bits
+ * 8i to 8i+7. A scanner caches the mask of the last block, so {@link #reset()} must be
+ * called whenever the contents of the scanned buffer change.
+ */
+final class StructuralScanner {
+    static final int BLOCK = 64;
+
+    private static final long LOW7 = 0x7F7F7F7F7F7F7F7FL;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long GATHER = 0x0102040810204080L;
+
+    private final byte t0;
+    private final byte t1;
+    private final byte t2;
+    private final byte t3;
+    private final long p0;
+    private final long p1;
+    private final long p2;
+    private final long p3;
+    private final int count;
+    private ByteBuffer cached;
+    private int blockStart;
+    private int blockEnd;
+    private long blockMask;
+
+    private StructuralScanner(byte[] targets) {
+        if (targets.length == 0 || targets.length > 4) {
+            throw new IllegalArgumentException("Between 1 and 4 target bytes are supported");
+        }
+        byte[] distinct = new byte[4];
+        int n = 0;
+        for (byte target : targets) {
+            boolean seen = false;
+            for (int i = 0; i < n; i++) {
+                seen |= distinct[i] == target;
+            }
+            if (!seen) {
+                distinct[n++] = target;
+            }
+        }
+        // Unused slots repeat the first target so they never add extra matches
+        for (int i = n; i < distinct.length; i++) {
+            distinct[i] = distinct[0];
+        }
+        this.count = n;
+        this.t0 = distinct[0];
+        this.t1 = distinct[1];
+        this.t2 = distinct[2];
+        this.t3 = distinct[3];
+        this.p0 = (t0 & 0xFFL) * ONES;
+        this.p1 = (t1 & 0xFFL) * ONES;
+        this.p2 = (t2 & 0xFFL) * ONES;
+        this.p3 = (t3 & 0xFFL) * ONES;
+    }
+
+    /**
+     * Creates a scanner for the given target bytes.
+     * @param targets One to four bytes to search for
+     * @return A scanner
+     */
+    static StructuralScanner create(byte... targets) {
+        return new StructuralScanner(targets);
+    }
+
+    /**
+     * Forgets the cached block mask. Call this when the scanned buffer is refilled.
+     */
+    void reset() {
+        cached = null;
+    }
+
+    /**
+     * Finds the first target byte at or after a position.
+     * @param buf The buffer to scan, read with absolute gets; must be little-endian
+     * @param from Index to start at
+     * @param to Index to stop at (exclusive)
+     * @return The index of the first target byte, or {@code to} if there is none
+     */
+    int next(ByteBuffer buf, int from, int to) {
+        while (from < to) {
+            if (buf != cached || from < blockStart || from >= blockEnd) {
+                if (to - from < BLOCK) {
+                    return scalarNext(buf, from, to);
+                }
+                cached = buf;
+                blockStart = from;
+                blockEnd = from + BLOCK;
+                blockMask = mask(buf, from);
+            }
+            long m = blockMask & (-1L << (from - blockStart));
+            if (m != 0) {
+                int index = blockStart + Long.numberOfTrailingZeros(m);
+                return index < to ? index : to;
+            }
+            from = blockEnd;
+        }
+        return to;
+    }
+
+    /**
+     * Classifies 64 bytes starting at an offset, eight bytes per step.
+     * @param buf The buffer to read
+     * @param offset Index of the first byte of the block
+     * @return A mask with bit i set if byte {@code offset + i} is a target byte
+     */
+    private long mask(ByteBuffer buf, int offset) {
+        long m = 0;
+        for (int i = 0; i < BLOCK; i += 8) {
+            long word = buf.getLong(offset + i);
+            // Only compare against distinct targets; each comparison is a sizeable share of the work
+            long hits = zeroBytes(word ^ p0);
+            if (count > 1) hits |= zeroBytes(word ^ p1);
+            if (count > 2) hits |= zeroBytes(word ^ p2);
+            if (count > 3) hits |= zeroBytes(word ^ p3);
+            // Move the high bit of each byte into one byte: bit 8k+7 becomes bit k
+            m |= (((hits >>> 7) * GATHER) >>> 56) << i;
+        }
+        return m;
+    }
+
+    /**
+     * Returns a word with the high bit set in exactly those bytes of x that are zero.
+     * Adding 0x7F to the low seven bits carries into the high bit for any nonzero low
+     * part, so unlike the usual (x - 0x01..) trick there are no false positives.
+     */
+    private static long zeroBytes(long x) {
+        return ~(((x & LOW7) + LOW7) | x | LOW7);
+    }
+
+    private int scalarNext(ByteBuffer buf, int from, int to) {
+        if (buf.hasArray()) {
+            byte[] a = buf.array();
+            int base = buf.arrayOffset();
+            for (int i = from; i < to; i++) {
+                byte b = a[base + i];
+                if (b == t0 || b == t1 || b == t2 || b == t3) {
+                    return i;
+                }
+            }
+            return to;
+        }
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == t0 || b == t1 || b == t2 || b == t3) {
+                return i;
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,101 @@
+// by Luminaw
+// Splits UTF-8 encoded records into fields without decoding the whole record.
+// Only the contents of each field are decoded, straight into the row's char buffer.
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A byte-level equivalent of {@link CSVParser#parseLine(String)} for UTF-8 input.
+ * Delimiters and quotes are ASCII (see {@link CSVParser#isAsciiDialect()}), and ASCII
+ * bytes never appear inside a multi-byte UTF-8 sequence, so field boundaries can be
+ * found on the raw bytes. Long records are scanned in blocks by a {@link StructuralScanner}.
+ */
+final class Utf8Tokenizer {
+    private final byte delimiter;
+    private final DelimiterMatcher delimiterMatcher;
+    private final int delimiterLength;
+    private final byte quote;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StructuralScanner scanner;
+    private ByteBuffer source = ByteBuffer.allocate(0);
+
+    Utf8Tokenizer(CSVParser parser) {
+        this.delimiterMatcher = parser.getDelimiterMatcher();
+        this.delimiterLength = delimiterMatcher.length();
+        this.delimiter = delimiterMatcher.firstByte();
+        this.quote = (byte) parser.getQuoteChar();
+        this.scanner = StructuralScanner.create(quote, delimiter);
+    }
+
+    /**
+     * Tokenizes one record. Runs of bytes between quotes and delimiters are decoded
+     * separately, so a malformed sequence next to a quote is replaced exactly as it is
+     * when the whole input is decoded first. Fields the row does not select are skipped
+     * without decoding, and scanning stops after the last selected field.
+     * @param bytes Buffer holding the record
+     * @param length Number of bytes in the record
+     * @param row The row to fill
+     */
+    void tokenize(byte[] bytes, int length, CSVRow row) {
+        if (!source.hasArray() || source.array() != bytes) {
+            source = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        row.clear();
+        scanner.reset();
+        int runStart = 0;
+        boolean inQuotes = false;
+
+        for (int i = 0; i < length; i++) {
+            i = scanner.next(source, i, length);
+            if (i == length) break;
+            byte b = bytes[i];
+
+            if (b == quote) {
+                decode(bytes, runStart, i, row);
+                if (inQuotes && i + 1 < length && bytes[i + 1] == quote) {
+                    if (row.keepsField()) row.append((char) b);
+                    i++;
+                } else {
+                    inQuotes = !inQuotes;
+                }
+                runStart = i + 1;
+            } else if (!inQuotes && (delimiterLength == 1 || delimiterMatcher.matches(bytes, i, length))) {
+                decode(bytes, runStart, i, row);
+                row.endField();
+                i += delimiterLength - 1;
+                runStart = i + 1;
+                if (!row.needsMoreFields()) {
+                    return; // No selected column follows
+                }
+            }
+        }
+
+        decode(bytes, runStart, length, row);
+        row.endField();
+    }
+
+    /**
+     * Decodes a run of field bytes into the row. A leading ASCII part is widened in one
+     * bulk copy; the rest of the run goes through a reused JDK decoder, so malformed input is replaced
+     * the same way as in the character engine and no String is created.
+     */
+    private void decode(byte[] bytes, int start, int end, CSVRow row) {
+        if (!row.keepsField()) {
+            return;
+        }
+        int ascii = start;
+        while (ascii < end && bytes[ascii] >= 0) ascii++;
+        row.appendAscii(bytes, start, ascii);
+        if (ascii < end) {
+            source.limit(end).position(ascii);
+            row.append(decoder, source);
+            source.limit(source.capacity());
+        }
+    }
+}